@@ -0,0 +1,227 @@
+package com.upgrad.creditcardfrauddetection;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+
+import org.apache.hadoop.hbase.client.AsyncConnection;
+import org.apache.hadoop.hbase.client.AsyncTable;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.ScanResultConsumer;
+
+/*
+ * AsyncFraudDetection is the non-blocking counterpart of
+ * CreditCardFraudDetection.FraudDetectionPartition. Lookup Get, classification
+ * and card_transactions_hive / lookup_data_hive Puts of each transaction are
+ * chained on AsyncTable futures of shared AsyncConnection, so task thread only
+ * issues requests and many card lookups of a partition are in flight at once.
+ * Each transaction is classified as soon as its lookup response arrives.
+ *
+ * Transactions in flight per partition are limited to
+ * fraud.async.concurrency (default 64); task thread waits for a permit before
+ * issuing next transaction. Transactions of same card are chained one after
+ * other, so a transaction is classified only after lookup Put of previous
+ * GENUINE transaction of that card has completed, same as in sequential
+ * processing. Callbacks run on common ForkJoinPool, not on HBase RPC threads.
+ * It calls HBase directly, so it is used with HBase store only (FraudStores).
+ */
+final class AsyncFraudDetection {
+
+	static final int DEFAULT_CONCURRENCY = 64;
+
+	private static final CompletableFuture<Void> DONE = CompletableFuture.completedFuture(null);
+
+	private AsyncFraudDetection() {
+	}
+
+	/*
+	 * Classify and write all transactions of a partition, returns once all writes
+	 * have completed
+	 */
+	static void processPartition(Iterator<CreditCardFraudDetection> partition) throws IOException {
+
+		if (!partition.hasNext()) {
+			return;
+		}
+
+		int concurrency = Math.max(1, Integer.getInteger("fraud.async.concurrency", DEFAULT_CONCURRENCY));
+		Semaphore permits = new Semaphore(concurrency);
+		AtomicInteger inFlight = new AtomicInteger();
+		LongAccumulator maxInFlight = new LongAccumulator(Long::max, 0);
+		AtomicInteger lookupUpdates = new AtomicInteger();
+
+		ExecutorService callbacks = ForkJoinPool.commonPool();
+		AsyncConnection connection = HBaseConnectionHolder.getAsyncConnection();
+		AsyncTable<ScanResultConsumer> lookupTable = HBaseConnectionHolder.tableExists(HBaseSchema.LOOKUP_TABLE)
+				? connection.getTable(HBaseSchema.LOOKUP_TABLE, callbacks)
+				: null;
+		AsyncTable<ScanResultConsumer> transactionTable = HBaseConnectionHolder
+				.tableExists(HBaseSchema.TRANSACTIONS_TABLE)
+						? connection.getTable(HBaseSchema.TRANSACTIONS_TABLE, callbacks)
+						: null;
+		if (lookupTable == null) {
+			System.out.println("\nHBase Table named : " + HBaseSchema.LOOKUP_TABLE + " : does not exist");
+		}
+		if (transactionTable == null) {
+			System.out.println("\nHBase Table named : " + HBaseSchema.TRANSACTIONS_TABLE + " : does not exist");
+		}
+
+		System.out.println("\nAsync Partition Processing Start Time : " + TransactionTime.now()
+				+ " : Concurrency Limit : " + concurrency);
+
+		/*
+		 * Last future of each card, next transaction of that card is chained on it
+		 */
+		Map<String, CompletableFuture<Void>> cardTails = new HashMap<String, CompletableFuture<Void>>();
+		List<CompletableFuture<Void>> anonymous = new ArrayList<CompletableFuture<Void>>();
+		int transactions = 0;
+
+		try {
+			while (partition.hasNext()) {
+				CreditCardFraudDetection transaction = partition.next();
+				transactions++;
+
+				permits.acquire();
+				maxInFlight.accumulate(inFlight.incrementAndGet());
+
+				String cardID = transaction.getCard_id();
+				CompletableFuture<Void> previous = (cardID == null) ? DONE : cardTails.getOrDefault(cardID, DONE);
+
+				CompletableFuture<Void> done = previous
+						.thenComposeAsync(v -> process(transaction, lookupTable, transactionTable, lookupUpdates),
+								callbacks)
+						.handle((v, e) -> {
+							if (e != null) {
+								e.printStackTrace();
+							}
+							inFlight.decrementAndGet();
+							permits.release();
+							return null;
+						});
+
+				if (cardID == null) {
+					anonymous.add(done);
+				} else {
+					cardTails.put(cardID, done);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for async HBase requests", e);
+		} finally {
+			/*
+			 * Wait for every transaction issued so far, before task completes
+			 */
+			List<CompletableFuture<Void>> pending = new ArrayList<CompletableFuture<Void>>(cardTails.values());
+			pending.addAll(anonymous);
+			CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).join();
+		}
+
+		DistanceUtility distUtil = DistanceUtility.getInstance();
+		CardProfileCache cache = CardProfileCache.getInstance();
+		System.out.println("\nAsync Partition Processing End Time : " + TransactionTime.now() + " : Transactions : "
+				+ transactions + " : Lookup Rows Updated : " + lookupUpdates.get() + " : Max In Flight : "
+				+ maxInFlight.get() + " : Distance Cache Hits / Misses : " + distUtil.getCacheHits() + " / "
+				+ distUtil.getCacheMisses());
+		if (cache != null) {
+			System.out.println("\nCard Profile Cache : " + cache.stats());
+		}
+	}
+
+	/*
+	 * Lookup, classify and write one transaction. Future completes when its Puts
+	 * have completed.
+	 */
+	private static CompletableFuture<Void> process(CreditCardFraudDetection transaction,
+			AsyncTable<ScanResultConsumer> lookupTable, AsyncTable<ScanResultConsumer> transactionTable,
+			AtomicInteger lookupUpdates) {
+
+		return getLookupProfile(transaction.getCard_id(), lookupTable).thenCompose(profile -> {
+
+			transaction.classifyTransaction(profile);
+
+			CompletableFuture<Void> transactionPut = DONE;
+			if (transactionTable != null) {
+				long start = System.nanoTime();
+				transactionPut = transactionTable.put(HBaseTransactionSink.transactionPut(transaction))
+						.thenRun(() -> FraudMetrics.record(FraudMetrics.Stage.PUT_TRANSACTION, start));
+			}
+
+			CompletableFuture<Void> lookupPut = DONE;
+			if (lookupTable != null && transaction.getStatus().equals("GENUINE")) {
+				Put p = HBaseTransactionSink.lookupPut(transaction);
+				long start = System.nanoTime();
+				lookupPut = lookupTable.put(p).thenRun(() -> {
+					FraudMetrics.record(FraudMetrics.Stage.PUT_LOOKUP, start);
+					lookupUpdates.incrementAndGet();
+
+					/*
+					 * Write-through of lookup update to cached profile of this card
+					 */
+					CardProfileCache cache = CardProfileCache.getInstance();
+					if (cache != null) {
+						cache.updateLastTransaction(transaction.getCard_id(), transaction.getPostcode(),
+								transaction.getTransactionMillis());
+					}
+				});
+			}
+
+			return CompletableFuture.allOf(transactionPut, lookupPut);
+		});
+	}
+
+	/*
+	 * Asynchronous form of HBaseLookupStore.getProfile. Profile is taken from
+	 * CardProfileCache if cached, otherwise read with one async Get.
+	 * Empty profile is returned if card ID is missing or lookup fails.
+	 */
+	static CompletableFuture<CardLookupProfile> getLookupProfile(String cardID,
+			AsyncTable<ScanResultConsumer> lookupTable) {
+
+		if (cardID == null) {
+			System.out.println("\nCard ID is not present in data recieved from Kafka. Kindly check Kafka stream");
+			return CompletableFuture.completedFuture(CardLookupProfile.empty(null));
+		}
+
+		CardProfileCache cache = CardProfileCache.getInstance();
+		if (cache != null) {
+			CardLookupProfile cached = cache.get(cardID);
+			if (cached != null) {
+				return CompletableFuture.completedFuture(cached);
+			}
+		}
+
+		if (lookupTable == null) {
+			return CompletableFuture.completedFuture(CardLookupProfile.empty(cardID));
+		}
+
+		long generation = (cache != null) ? cache.generation(cardID) : 0L;
+		long start = System.nanoTime();
+		return lookupTable.get(HBaseLookupStore.lookupGet(cardID)).handle((result, e) -> {
+			FraudMetrics.record(FraudMetrics.Stage.LOOKUP_ASYNC_GET, start);
+			if (e != null) {
+				e.printStackTrace();
+				return CardLookupProfile.empty(cardID);
+			}
+			try {
+				CardLookupProfile profile = CardLookupProfile.fromResult(cardID, result);
+				if (cache != null) {
+					cache.put(profile, generation);
+				}
+				return profile;
+			} catch (Exception ex) {
+				ex.printStackTrace();
+				return CardLookupProfile.empty(cardID);
+			}
+		});
+	}
+}
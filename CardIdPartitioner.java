@@ -0,0 +1,50 @@
+package com.upgrad.creditcardfrauddetection;
+
+import org.apache.spark.Partitioner;
+
+/*
+ * CardIdPartitioner assigns records keyed by card_id to partitions. The
+ * assignment depends only on card_id and number of partitions (String hashCode
+ * is defined by Java specification, so it is same on driver and every
+ * executor), so with a fixed number of partitions a card lands in same
+ * partition in every micro-batch and all its transactions of a batch are
+ * classified in order by one task.
+ */
+@SuppressWarnings("serial")
+public class CardIdPartitioner extends Partitioner {
+
+	private final int partitions;
+
+	public CardIdPartitioner(int partitions) {
+		if (partitions <= 0) {
+			throw new IllegalArgumentException("Number of partitions must be positive : " + partitions);
+		}
+		this.partitions = partitions;
+	}
+
+	@Override
+	public int numPartitions() {
+		return partitions;
+	}
+
+	/*
+	 * Records without card_id all go to first partition
+	 */
+	@Override
+	public int getPartition(Object key) {
+		if (key == null) {
+			return 0;
+		}
+		return Math.floorMod(key.hashCode(), partitions);
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		return (other instanceof CardIdPartitioner) && ((CardIdPartitioner) other).partitions == partitions;
+	}
+
+	@Override
+	public int hashCode() {
+		return partitions;
+	}
+}
@@ -0,0 +1,115 @@
+package com.upgrad.creditcardfrauddetection;
+
+import java.util.Date;
+
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/*
+ * CardLookupProfile is an immutable snapshot of one row of lookup_data_hive
+ * HBase table. It carries ucl and score from lookup_card_family and last
+ * postcode and transaction_dt from lookup_transaction_family, so all rule
+ * inputs for a card are available after a single Get.
+ */
+@SuppressWarnings("serial")
+public final class CardLookupProfile implements java.io.Serializable {
+
+	private final String card_id;
+	private final double ucl;
+	private final int score;
+	private final String postcode;
+	private final long transaction_dt;
+
+	/*
+	 * transaction_dt is held as epoch milliseconds (TransactionTime.NONE if
+	 * absent), which also keeps this class immutable
+	 */
+	public CardLookupProfile(String card_id, double ucl, int score, String postcode, long transaction_dt) {
+		this.card_id = card_id;
+		this.ucl = ucl;
+		this.score = score;
+		this.postcode = postcode;
+		this.transaction_dt = transaction_dt;
+	}
+
+	/*
+	 * Profile returned when there is no row (or lookup failed) for a card. Values
+	 * are the same defaults the individual getters returned for missing cells.
+	 */
+	public static CardLookupProfile empty(String card_id) {
+		return new CardLookupProfile(card_id, 0d, 0, null, TransactionTime.NONE);
+	}
+
+	/*
+	 * Build profile from HBase Result fetched for lookup_data_hive row. Missing
+	 * cells are mapped to same defaults as empty() profile.
+	 */
+	public static CardLookupProfile fromResult(String card_id, Result result) {
+
+		byte[] value = result.getValue(HBaseSchema.LOOKUP_CARD_FAMILY, HBaseSchema.UCL);
+		double ucl = (value != null) ? CellCodec.decodeDouble(value) : 0d;
+
+		value = result.getValue(HBaseSchema.LOOKUP_CARD_FAMILY, HBaseSchema.SCORE);
+		int score = (value != null) ? CellCodec.decodeInt(value) : 0;
+
+		value = result.getValue(HBaseSchema.LOOKUP_TRANSACTION_FAMILY, HBaseSchema.POSTCODE);
+		String postcode = (value != null) ? Bytes.toString(value) : null;
+
+		value = result.getValue(HBaseSchema.LOOKUP_TRANSACTION_FAMILY, HBaseSchema.TRANSACTION_DT);
+		long transaction_dt = (value != null) ? TransactionTime.fromCell(value) : TransactionTime.NONE;
+
+		return new CardLookupProfile(card_id, ucl, score, postcode, transaction_dt);
+	}
+
+	/*
+	 * Return copy of this profile with postcode and transaction_dt replaced by
+	 * those of a GENUINE transaction, same as update done on lookup table
+	 */
+	public CardLookupProfile withLastTransaction(String postcode, long transaction_dt) {
+		return new CardLookupProfile(this.card_id, this.ucl, this.score, postcode, transaction_dt);
+	}
+
+	/*
+	 * getter method for card_id
+	 */
+	public String getCard_id() {
+		return card_id;
+	}
+
+	/*
+	 * getter method for ucl (upper control limit)
+	 */
+	public double getUcl() {
+		return ucl;
+	}
+
+	/*
+	 * getter method for member score
+	 */
+	public int getScore() {
+		return score;
+	}
+
+	/*
+	 * getter method for last postcode
+	 */
+	public String getPostcode() {
+		return postcode;
+	}
+
+	/*
+	 * getter method for last transaction date. A new Date is returned every time
+	 * so callers can not modify this profile.
+	 */
+	public Date getTransaction_dt() {
+		return (transaction_dt == TransactionTime.NONE) ? null : new Date(transaction_dt);
+	}
+
+	/*
+	 * getter method for last transaction date as epoch milliseconds,
+	 * TransactionTime.NONE if there is none
+	 */
+	public long getTransactionMillis() {
+		return transaction_dt;
+	}
+}
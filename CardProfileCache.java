@@ -0,0 +1,299 @@
+package com.upgrad.creditcardfrauddetection;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * CardProfileCache is an executor-local near-cache of CardLookupProfile in
+ * front of lookup_data_hive HBase table, so repeat swipes on hot cards do not
+ * read HBase at all.
+ *
+ * Cache is split into segments, each an access ordered LinkedHashMap (LRU)
+ * guarded by its own lock, so task threads of one executor rarely contend.
+ * Entries are bounded in number (fraud.profile.cache.size, 0 disables cache)
+ * and in age (fraud.profile.cache.ttl.seconds). A GENUINE transaction written
+ * to lookup table updates cached profile in place. Whole cache is invalidated
+ * when lookup refresh job bumps LookupRefreshMarker, which is polled every
+ * fraud.profile.cache.marker.poll.seconds.
+ *
+ * A profile read from HBase is cached only if nothing changed its segment
+ * since the read started : caller takes generation() before the read and
+ * passes it to put(). Invalidation and a write-through for a card which is not
+ * cached bump generation, so a read racing with them does not cache a profile
+ * older than HBase. An entry with a later transaction_dt is never replaced.
+ */
+final class CardProfileCache {
+
+	static final int DEFAULT_SIZE = 100000;
+	static final long DEFAULT_TTL_SECONDS = 4 * 60 * 60;
+	static final long DEFAULT_MARKER_POLL_SECONDS = 60;
+
+	private static final int SEGMENTS = 16;
+
+	private static volatile CardProfileCache instance = null;
+
+	/*
+	 * Cached profile with time it was read from HBase. Updating last transaction
+	 * keeps that time, since ucl and score are still as read then.
+	 */
+	private static final class CachedProfile {
+		final CardLookupProfile profile;
+		final long loadedAt;
+
+		CachedProfile(CardLookupProfile profile, long loadedAt) {
+			this.profile = profile;
+			this.loadedAt = loadedAt;
+		}
+	}
+
+	private final LinkedHashMap<String, CachedProfile>[] segments;
+	private final long[] generations = new long[SEGMENTS];
+	private final long ttlMillis;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder expired = new LongAdder();
+	private final LongAdder writeThroughs = new LongAdder();
+	private final LongAdder invalidations = new LongAdder();
+	private final LongAdder stalePuts = new LongAdder();
+	private final LongAdder stalenessMillis = new LongAdder();
+	private final LongAccumulator maxStalenessMillis = new LongAccumulator(Long::max, 0);
+
+	private volatile long refreshMarker = Long.MIN_VALUE;
+
+	@SuppressWarnings("unchecked")
+	private CardProfileCache(int size, long ttlMillis) {
+
+		final int segmentSize = Math.max(1, size / SEGMENTS);
+		this.segments = new LinkedHashMap[SEGMENTS];
+		for (int i = 0; i < SEGMENTS; i++) {
+			this.segments[i] = new LinkedHashMap<String, CachedProfile>(16, 0.75f, true) {
+
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, CachedProfile> eldest) {
+					return size() > segmentSize;
+				}
+			};
+		}
+		this.ttlMillis = ttlMillis;
+	}
+
+	/*
+	 * Returns cache of this JVM, or null if cache is disabled
+	 */
+	static CardProfileCache getInstance() {
+
+		CardProfileCache cache = instance;
+		if (cache == null) {
+			int size = Integer.getInteger("fraud.profile.cache.size", DEFAULT_SIZE);
+			if (size <= 0) {
+				return null;
+			}
+			synchronized (CardProfileCache.class) {
+				cache = instance;
+				if (cache == null) {
+					long ttlSeconds = Long.getLong("fraud.profile.cache.ttl.seconds", DEFAULT_TTL_SECONDS);
+					cache = new CardProfileCache(size, TimeUnit.SECONDS.toMillis(ttlSeconds));
+					cache.startMarkerPolling(
+							Long.getLong("fraud.profile.cache.marker.poll.seconds", DEFAULT_MARKER_POLL_SECONDS));
+					instance = cache;
+				}
+			}
+		}
+		return cache;
+	}
+
+	/*
+	 * Returns cache of this JVM if it is already created, else null. Used by
+	 * metrics, which should not create cache.
+	 */
+	static CardProfileCache getLoadedInstance() {
+		return instance;
+	}
+
+	private static int segmentIndex(String cardID) {
+		int h = cardID.hashCode();
+		return (h ^ (h >>> 16)) & (SEGMENTS - 1);
+	}
+
+	private LinkedHashMap<String, CachedProfile> segmentOf(String cardID) {
+		return segments[segmentIndex(cardID)];
+	}
+
+	/*
+	 * Generation of segment of card, to be taken before its profile is read from
+	 * HBase and passed to put()
+	 */
+	long generation(String cardID) {
+		int index = segmentIndex(cardID);
+		synchronized (segments[index]) {
+			return generations[index];
+		}
+	}
+
+	/*
+	 * Returns cached profile of card, or null if not cached or older than TTL
+	 */
+	CardLookupProfile get(String cardID) {
+
+		LinkedHashMap<String, CachedProfile> segment = segmentOf(cardID);
+		CachedProfile entry;
+		synchronized (segment) {
+			entry = segment.get(cardID);
+		}
+
+		if (entry == null) {
+			misses.increment();
+			return null;
+		}
+
+		long age = System.currentTimeMillis() - entry.loadedAt;
+		if (age > ttlMillis) {
+			synchronized (segment) {
+				segment.remove(cardID, entry);
+			}
+			expired.increment();
+			misses.increment();
+			return null;
+		}
+
+		hits.increment();
+		stalenessMillis.add(age);
+		maxStalenessMillis.accumulate(age);
+		return entry.profile;
+	}
+
+	/*
+	 * Caches profile read from HBase after generation was taken. Profile is
+	 * dropped if segment was invalidated or written through since then, and does
+	 * not replace a cached profile with a later transaction_dt.
+	 */
+	void put(CardLookupProfile profile, long generation) {
+		int index = segmentIndex(profile.getCard_id());
+		LinkedHashMap<String, CachedProfile> segment = segments[index];
+		synchronized (segment) {
+			if (generations[index] != generation) {
+				stalePuts.increment();
+				return;
+			}
+			CachedProfile entry = segment.get(profile.getCard_id());
+			if (entry != null && entry.profile.getTransactionMillis() > profile.getTransactionMillis()) {
+				stalePuts.increment();
+				return;
+			}
+			segment.put(profile.getCard_id(), new CachedProfile(profile, System.currentTimeMillis()));
+		}
+	}
+
+	/*
+	 * Write-through of a GENUINE transaction written to lookup table. Cached
+	 * profile, if any, gets postcode and transaction_dt of that transaction. If
+	 * card is not cached, a read of it in flight may predate this write, so
+	 * generation of its segment is bumped.
+	 */
+	void updateLastTransaction(String cardID, String postcode, long transaction_dt) {
+		int index = segmentIndex(cardID);
+		LinkedHashMap<String, CachedProfile> segment = segments[index];
+		synchronized (segment) {
+			CachedProfile entry = segment.get(cardID);
+			if (entry != null) {
+				segment.put(cardID,
+						new CachedProfile(entry.profile.withLastTransaction(postcode, transaction_dt), entry.loadedAt));
+				writeThroughs.increment();
+			} else {
+				generations[index]++;
+			}
+		}
+	}
+
+	/*
+	 * Drops all cached profiles, called when lookup table is refreshed
+	 */
+	void invalidateAll() {
+		for (int i = 0; i < SEGMENTS; i++) {
+			synchronized (segments[i]) {
+				segments[i].clear();
+				generations[i]++;
+			}
+		}
+		invalidations.increment();
+	}
+
+	/*
+	 * Poll LookupRefreshMarker in a daemon thread and invalidate cache when it
+	 * changes. First successful read only records current marker.
+	 */
+	private void startMarkerPolling(long pollSeconds) {
+
+		if (pollSeconds <= 0) {
+			return;
+		}
+
+		ScheduledExecutorService poller = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "card-profile-cache-refresh-marker");
+			t.setDaemon(true);
+			return t;
+		});
+
+		poller.scheduleWithFixedDelay(() -> {
+			try {
+				long marker = LookupRefreshMarker.read();
+				if (refreshMarker != Long.MIN_VALUE && marker != refreshMarker) {
+					System.out.println("\nLookup table refresh detected, invalidating card profile cache");
+					invalidateAll();
+				}
+				refreshMarker = marker;
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+		}, pollSeconds, pollSeconds, TimeUnit.SECONDS);
+	}
+
+	long getHits() {
+		return hits.sum();
+	}
+
+	long getMisses() {
+		return misses.sum();
+	}
+
+	/*
+	 * Share of lookups served from cache
+	 */
+	double getHitRate() {
+		long h = hits.sum();
+		long total = h + misses.sum();
+		return (total == 0) ? 0d : (double) h / total;
+	}
+
+	/*
+	 * Average and maximum age of profiles served from cache, i.e. how long ago
+	 * their ucl and score were read from HBase
+	 */
+	long getAverageStalenessMillis() {
+		long h = hits.sum();
+		return (h == 0) ? 0 : stalenessMillis.sum() / h;
+	}
+
+	long getMaxStalenessMillis() {
+		return maxStalenessMillis.get();
+	}
+
+	/*
+	 * One line summary of cache metrics for logging
+	 */
+	String stats() {
+		return "Hits : " + getHits() + " : Misses : " + getMisses() + " : Hit Rate : "
+				+ String.format("%.2f", getHitRate() * 100) + " % : Expired : " + expired.sum() + " : Write-throughs : "
+				+ writeThroughs.sum() + " : Invalidations : " + invalidations.sum() + " : Stale Puts : "
+				+ stalePuts.sum() + " : Avg / Max Staleness (ms) : "
+				+ getAverageStalenessMillis() + " / " + getMaxStalenessMillis();
+	}
+}
@@ -0,0 +1,142 @@
+package com.upgrad.creditcardfrauddetection;
+
+/*
+ * CardState is per card state kept by stateful processing mode of
+ * KafkaConsumer (mapWithState). It replaces lookup_data_hive reads for a card
+ * once the card has been seen:
+ *
+ * 1. Amounts of last 10 GENUINE transactions are kept in a ring buffer along
+ * with their running sum and sum of squares, so UCL (average + 3 x standard
+ * deviation, same as lookupDataRefresh.hql) is updated in O(1) for every
+ * GENUINE transaction instead of every 4 hours.
+ *
+ * 2. Last postcode and transaction date are updated by every GENUINE
+ * transaction, same as lookup table update.
+ *
+ * 3. Score, and UCL to be used until ring buffer holds full history of the
+ * card, come from lookup profile loaded when card is first seen, and reloaded
+ * once profile is older than given age.
+ */
+@SuppressWarnings("serial")
+public class CardState implements java.io.Serializable {
+
+	/*
+	 * Number of last GENUINE transactions UCL is based on
+	 */
+	static final int WINDOW = 10;
+
+	private final double[] amounts = new double[WINDOW];
+	private int count = 0;
+	private int next = 0;
+	private double sum = 0d;
+	private double sumOfSquares = 0d;
+
+	/*
+	 * true if ring buffer was seeded with full GENUINE history of the card, so
+	 * its UCL is valid even with fewer than WINDOW amounts
+	 */
+	private boolean historySeeded = false;
+
+	private boolean profileLoaded = false;
+	private long profileLoadedAt = 0L;
+	private double profileUcl = 0d;
+	private int score = 0;
+	private String lastPostcode = null;
+	private long lastTransactionDt = TransactionTime.NONE;
+
+	/*
+	 * State seeded from last GENUINE amounts of a card, oldest first, as ranked by
+	 * lookupDataRefresh.hql
+	 */
+	static CardState fromHistory(double[] amountsOldestFirst) {
+		CardState state = new CardState();
+		for (double amount : amountsOldestFirst) {
+			state.addAmount(amount);
+		}
+		state.historySeeded = true;
+		return state;
+	}
+
+	/*
+	 * Take score and UCL from lookup profile. Last postcode and transaction date
+	 * are taken only if state has none yet, since state is updated more recently.
+	 */
+	void loadProfile(CardLookupProfile profile, long now) {
+		this.profileUcl = profile.getUcl();
+		this.score = profile.getScore();
+		if (this.lastPostcode == null) {
+			this.lastPostcode = profile.getPostcode();
+			this.lastTransactionDt = profile.getTransactionMillis();
+		}
+		this.profileLoaded = true;
+		this.profileLoadedAt = now;
+	}
+
+	/*
+	 * true if lookup profile was never loaded or is older than maxAgeMillis
+	 */
+	boolean needsProfile(long now, long maxAgeMillis) {
+		return !profileLoaded || (now - profileLoadedAt) > maxAgeMillis;
+	}
+
+	/*
+	 * Record GENUINE transaction : its amount enters UCL window and it becomes
+	 * last transaction of the card
+	 */
+	void recordGenuine(double amount, String postcode, long transaction_dt) {
+		addAmount(amount);
+		this.lastPostcode = postcode;
+		this.lastTransactionDt = transaction_dt;
+	}
+
+	private void addAmount(double amount) {
+		if (count == WINDOW) {
+			double oldest = amounts[next];
+			sum -= oldest;
+			sumOfSquares -= oldest * oldest;
+		} else {
+			count++;
+		}
+		amounts[next] = amount;
+		sum += amount;
+		sumOfSquares += amount * amount;
+		next = (next + 1) % WINDOW;
+
+		/*
+		 * Running sums are recomputed from buffer once per full turn, so rounding
+		 * errors of subtract and add do not build up
+		 */
+		if (next == 0) {
+			sum = 0d;
+			sumOfSquares = 0d;
+			for (int i = 0; i < count; i++) {
+				sum += amounts[i];
+				sumOfSquares += amounts[i] * amounts[i];
+			}
+		}
+	}
+
+	/*
+	 * UCL from ring buffer once it holds full history (WINDOW amounts, or seeded
+	 * history), otherwise UCL of lookup profile
+	 */
+	double getUcl() {
+		if (count == 0 || (count < WINDOW && !historySeeded)) {
+			return profileUcl;
+		}
+		double mean = sum / count;
+		double variance = Math.max(0d, sumOfSquares / count - mean * mean);
+		return mean + 3 * Math.sqrt(variance);
+	}
+
+	int getScore() {
+		return score;
+	}
+
+	/*
+	 * Profile view of this state for classification
+	 */
+	CardLookupProfile toProfile(String card_id) {
+		return new CardLookupProfile(card_id, getUcl(), score, lastPostcode, lastTransactionDt);
+	}
+}
@@ -0,0 +1,116 @@
+package com.upgrad.creditcardfrauddetection;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.spark.api.java.JavaPairRDD;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.api.java.Optional;
+import org.apache.spark.api.java.function.Function3;
+import org.apache.spark.streaming.State;
+
+import scala.Tuple2;
+
+/*
+ * CardStateMapping is the mapWithState function of stateful processing mode of
+ * KafkaConsumer. For each transaction, keyed by card_id, it classifies the
+ * transaction against CardState of its card and updates that state if
+ * transaction is GENUINE. Lookup table is read only when a card is first seen
+ * or its loaded score is older than profileMaxAgeMillis.
+ */
+@SuppressWarnings("serial")
+public class CardStateMapping
+		implements Function3<String, Optional<CreditCardFraudDetection>, State<CardState>, CreditCardFraudDetection> {
+
+	/*
+	 * Key used for transactions without card_id, which are classified but never
+	 * kept in state
+	 */
+	static final String NO_CARD_KEY = "";
+
+	private final String hostServerIP;
+	private final long profileMaxAgeMillis;
+
+	public CardStateMapping(String hostServerIP, long profileMaxAgeMillis) {
+		this.hostServerIP = hostServerIP;
+		this.profileMaxAgeMillis = profileMaxAgeMillis;
+	}
+
+	/*
+	 * Key of transaction for mapWithState
+	 */
+	static String keyOf(CreditCardFraudDetection transaction) {
+		return (transaction.getCard_id() == null) ? NO_CARD_KEY : transaction.getCard_id();
+	}
+
+	@Override
+	public CreditCardFraudDetection call(String cardID, Optional<CreditCardFraudDetection> value,
+			State<CardState> state) throws Exception {
+
+		if (!value.isPresent()) {
+			return null;
+		}
+
+		CreditCardFraudDetection transaction = value.get();
+
+		if (cardID.equals(NO_CARD_KEY)) {
+			transaction.classifyTransaction(CardLookupProfile.empty(null));
+			return transaction;
+		}
+
+		CardState cardState = state.exists() ? state.get() : new CardState();
+
+		/*
+		 * Load score (and UCL / last transaction until state has its own) from lookup
+		 * table when card is first seen or loaded values got old
+		 */
+		long now = System.currentTimeMillis();
+		if (cardState.needsProfile(now, profileMaxAgeMillis)) {
+			CreditCardFraudDetection.initHostServerIP(hostServerIP);
+			CardLookupProfile profile = CreditCardFraudDetection.getLookupProfile(cardID);
+			cardState.loadProfile((profile != null) ? profile : CardLookupProfile.empty(cardID), now);
+		}
+
+		transaction.classifyTransaction(cardState.toProfile(cardID));
+
+		if (transaction.getStatus().equals("GENUINE")) {
+			cardState.recordGenuine(transaction.getAmount(), transaction.getPostcode(),
+					transaction.getTransactionMillis());
+		}
+		state.update(cardState);
+
+		return transaction;
+	}
+
+	/*
+	 * loadSeed method builds initial state from export of
+	 * RANKED_CARD_TRANSACTIONS_ORC (last 10 GENUINE transactions of each card), a
+	 * text file with comma separated CARD_ID, AMOUNT, POSTCODE, TRANSACTION_DT,
+	 * RANK. It can be exported in Hive by:
+	 *
+	 * INSERT OVERWRITE DIRECTORY '/capstone_project/card_state_seed' ROW FORMAT
+	 * DELIMITED FIELDS TERMINATED BY ',' SELECT * FROM RANKED_CARD_TRANSACTIONS_ORC;
+	 */
+	public static JavaPairRDD<String, CardState> loadSeed(JavaSparkContext sc, String path) {
+
+		return sc.textFile(path).map(line -> line.split(",")).filter(str -> str.length >= 5)
+				.mapToPair(str -> new Tuple2<String, Tuple2<Integer, Double>>(str[0],
+						new Tuple2<Integer, Double>(Integer.parseInt(str[4].trim()), Double.parseDouble(str[1]))))
+				.groupByKey().mapValues(ranked -> {
+
+					/*
+					 * Highest rank is oldest transaction, so it enters ring buffer first
+					 */
+					List<Tuple2<Integer, Double>> list = new ArrayList<Tuple2<Integer, Double>>();
+					ranked.forEach(list::add);
+					list.sort((a, b) -> Integer.compare(b._1(), a._1()));
+
+					int from = Math.max(0, list.size() - CardState.WINDOW);
+					double[] amounts = new double[list.size() - from];
+					for (int i = from; i < list.size(); i++) {
+						amounts[i - from] = list.get(i)._2();
+					}
+					return CardState.fromHistory(amounts);
+				});
+	}
+}
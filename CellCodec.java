@@ -0,0 +1,120 @@
+package com.upgrad.creditcardfrauddetection;
+
+import org.apache.hadoop.hbase.util.Bytes;
+
+/*
+ * CellCodec encodes typed cells of card_transactions_hive and lookup_data_hive
+ * (amount and ucl as double, score as int, transaction_dt as epoch
+ * milliseconds). A binary cell is a version byte followed by the fixed width
+ * value in Bytes format:
+ *
+ * VERSION_1 : double (8 bytes), int (4 bytes), long (8 bytes)
+ *
+ * Text cells, as written by Hive and by earlier versions of this application,
+ * never start with a byte below ' ', so every decode method reads both forms
+ * (dual-read) and no text is parsed once a table is migrated.
+ *
+ * Cells are written as text by default, since Hive storage handler reads these
+ * columns as text. With -Dfraud.hbase.binaryCells=true they are written in
+ * binary, once no Hive query reads the tables directly. CellMigration converts
+ * existing cells of a table in either direction.
+ */
+final class CellCodec {
+
+	static final byte VERSION_1 = 1;
+
+	static final boolean BINARY_WRITES = Boolean.getBoolean("fraud.hbase.binaryCells");
+
+	private CellCodec() {
+	}
+
+	/*
+	 * Cell value of a double, binary or text as configured
+	 */
+	static byte[] encodeDouble(double value) {
+		return BINARY_WRITES ? binaryDouble(value) : textDouble(value);
+	}
+
+	static byte[] binaryDouble(double value) {
+		byte[] cell = new byte[1 + Bytes.SIZEOF_DOUBLE];
+		cell[0] = VERSION_1;
+		Bytes.putDouble(cell, 1, value);
+		return cell;
+	}
+
+	static byte[] textDouble(double value) {
+		return Bytes.toBytes(Double.toString(value));
+	}
+
+	static double decodeDouble(byte[] cell) {
+		if (cell.length == 1 + Bytes.SIZEOF_DOUBLE && cell[0] == VERSION_1) {
+			return Bytes.toDouble(cell, 1);
+		}
+		return Double.parseDouble(Bytes.toString(cell));
+	}
+
+	/*
+	 * Cell value of an int, binary or text as configured
+	 */
+	static byte[] encodeInt(int value) {
+		return BINARY_WRITES ? binaryInt(value) : textInt(value);
+	}
+
+	static byte[] binaryInt(int value) {
+		byte[] cell = new byte[1 + Bytes.SIZEOF_INT];
+		cell[0] = VERSION_1;
+		Bytes.putInt(cell, 1, value);
+		return cell;
+	}
+
+	static byte[] textInt(int value) {
+		return Bytes.toBytes(Integer.toString(value));
+	}
+
+	static int decodeInt(byte[] cell) {
+		if (cell.length == 1 + Bytes.SIZEOF_INT && cell[0] == VERSION_1) {
+			return Bytes.toInt(cell, 1);
+		}
+		return Integer.parseInt(Bytes.toString(cell));
+	}
+
+	/*
+	 * Cell value of a time in epoch milliseconds, binary or text
+	 * (TransactionTime.HBASE_FORMAT) as configured
+	 */
+	static byte[] encodeTime(long epochMillis) {
+		return BINARY_WRITES ? binaryTime(epochMillis) : textTime(epochMillis);
+	}
+
+	static byte[] binaryTime(long epochMillis) {
+		byte[] cell = new byte[1 + Bytes.SIZEOF_LONG];
+		cell[0] = VERSION_1;
+		Bytes.putLong(cell, 1, epochMillis);
+		return cell;
+	}
+
+	static byte[] textTime(long epochMillis) {
+		return Bytes.toBytes(TransactionTime.format(epochMillis));
+	}
+
+	static long decodeTime(byte[] cell) {
+		if (cell.length == 1 + Bytes.SIZEOF_LONG && cell[0] == VERSION_1) {
+			return Bytes.toLong(cell, 1);
+		}
+		return TransactionTime.parse(Bytes.toString(cell));
+	}
+
+	/*
+	 * true if cell is in binary form of this codec
+	 */
+	static boolean isBinary(byte[] cell) {
+		return cell.length > 0 && cell[0] == VERSION_1;
+	}
+
+	/*
+	 * true if cell is in text form
+	 */
+	static boolean isText(byte[] cell) {
+		return cell.length == 0 || (cell[0] & 0xff) >= ' ';
+	}
+}
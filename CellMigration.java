@@ -0,0 +1,157 @@
+package com.upgrad.creditcardfrauddetection;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.BufferedMutator;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/*
+ * CellMigration converts typed cells of lookup_data_hive (ucl, score,
+ * transaction_dt) or card_transactions_hive (amount, transaction_dt) between
+ * text and binary form of CellCodec. Only typed columns are scanned, and only
+ * cells not already in target form are rewritten, so migration can be run
+ * again after an interruption. Since CellCodec reads both forms and converted
+ * cells keep their timestamp, streaming application can keep running during
+ * migration.
+ *
+ * Usage : CellMigration [host server IP] [lookup | transactions] [binary | text]
+ */
+public class CellMigration {
+
+	public static final String TABLE_LOOKUP = "lookup";
+	public static final String TABLE_TRANSACTIONS = "transactions";
+	public static final List<String> TABLES = Arrays.asList(TABLE_LOOKUP, TABLE_TRANSACTIONS);
+
+	public static final String TARGET_BINARY = "binary";
+	public static final String TARGET_TEXT = "text";
+	public static final List<String> TARGETS = Arrays.asList(TARGET_BINARY, TARGET_TEXT);
+
+	/*
+	 * Number of rows fetched per scanner RPC
+	 */
+	private static final int SCAN_CACHING = 1000;
+
+	public static void main(String[] args) throws Exception {
+
+		/*
+		 * Check if 3 arguments are passed to the program
+		 */
+		if (args.length != 3 || !TABLES.contains(args[1]) || !TARGETS.contains(args[2])) {
+			System.out.println("Please enter 1st argument as host server IP");
+			System.out.println("Please enter 2nd argument as table, one of : " + TABLES);
+			System.out.println("Please enter 3rd argument as target cell form, one of : " + TARGETS);
+			return;
+		}
+
+		CreditCardFraudDetection.hostServerIP = args[0];
+		boolean toBinary = args[2].equals(TARGET_BINARY);
+
+		System.out.println("Cell Migration Start Time : " + TransactionTime.now());
+
+		long[] counts;
+		if (args[1].equals(TABLE_LOOKUP)) {
+			counts = migrate(HBaseSchema.LOOKUP_TABLE, toBinary,
+					new byte[][] { HBaseSchema.LOOKUP_CARD_FAMILY, HBaseSchema.UCL },
+					new byte[][] { HBaseSchema.LOOKUP_CARD_FAMILY, HBaseSchema.SCORE },
+					new byte[][] { HBaseSchema.LOOKUP_TRANSACTION_FAMILY, HBaseSchema.TRANSACTION_DT });
+		} else {
+			counts = migrate(HBaseSchema.TRANSACTIONS_TABLE, toBinary,
+					new byte[][] { HBaseSchema.TRANSACTIONS_FAMILY, HBaseSchema.AMOUNT },
+					new byte[][] { HBaseSchema.TRANSACTIONS_FAMILY, HBaseSchema.TRANSACTION_DT });
+		}
+
+		System.out.println("Cell Migration End Time : " + TransactionTime.now() + " : Rows Scanned : " + counts[0]
+				+ " : Cells Converted : " + counts[1] + " : Cells Failed : " + counts[2]);
+
+		HBaseConnectionHolder.close();
+	}
+
+	/*
+	 * migrate method converts given columns (each a family / qualifier pair) of
+	 * table to target form. Returns rows scanned, cells converted and cells which
+	 * could not be decoded.
+	 */
+	static long[] migrate(TableName tableName, boolean toBinary, byte[][]... columns) throws Exception {
+
+		long rows = 0L;
+		long converted = 0L;
+		long failed = 0L;
+
+		Scan scan = new Scan().setCaching(SCAN_CACHING).setCacheBlocks(false);
+		for (byte[][] column : columns) {
+			scan.addColumn(column[0], column[1]);
+		}
+
+		try (Table table = HBaseConnectionHolder.getTable(tableName);
+				ResultScanner scanner = table.getScanner(scan);
+				BufferedMutator mutator = HBaseConnectionHolder.getBufferedMutator(tableName)) {
+
+			for (Result result : scanner) {
+				rows++;
+				Put put = null;
+
+				for (byte[][] column : columns) {
+					Cell latest = result.getColumnLatestCell(column[0], column[1]);
+					if (latest == null) {
+						continue;
+					}
+					byte[] cell = CellUtil.cloneValue(latest);
+					if (toBinary ? CellCodec.isBinary(cell) : CellCodec.isText(cell)) {
+						continue;
+					}
+					try {
+						if (put == null) {
+							put = new Put(result.getRow());
+						}
+						/*
+						 * Converted cell keeps timestamp of cell it replaces, so a newer cell written
+						 * by streaming application meanwhile still wins
+						 */
+						put.addColumn(column[0], column[1], latest.getTimestamp(),
+								convert(column[1], cell, toBinary));
+						converted++;
+					} catch (Exception e) {
+						System.out.println("Could not convert cell of row : " + Bytes.toString(result.getRow()) + " : "
+								+ e.getMessage());
+						failed++;
+					}
+				}
+
+				if (put != null && !put.isEmpty()) {
+					mutator.mutate(put);
+				}
+				if (rows % 100000 == 0) {
+					System.out.println("Rows Scanned : " + rows + " : Cells Converted : " + converted);
+				}
+			}
+		}
+
+		return new long[] { rows, converted, failed };
+	}
+
+	/*
+	 * Re-encode one cell of given column in target form
+	 */
+	private static byte[] convert(byte[] qualifier, byte[] cell, boolean toBinary) {
+
+		if (Arrays.equals(qualifier, HBaseSchema.SCORE)) {
+			int value = CellCodec.decodeInt(cell);
+			return toBinary ? CellCodec.binaryInt(value) : CellCodec.textInt(value);
+		}
+		if (Arrays.equals(qualifier, HBaseSchema.TRANSACTION_DT)) {
+			long value = CellCodec.decodeTime(cell);
+			return toBinary ? CellCodec.binaryTime(value) : CellCodec.textTime(value);
+		}
+		double value = CellCodec.decodeDouble(cell);
+		return toBinary ? CellCodec.binaryDouble(value) : CellCodec.textDouble(value);
+	}
+}
@@ -1,25 +1,17 @@
 package com.upgrad.creditcardfrauddetection;
 
 import java.io.IOException;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
-import java.util.UUID;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
-import org.apache.hadoop.conf.Configuration;
-import org.apache.hadoop.hbase.HBaseConfiguration;
-import org.apache.hadoop.hbase.TableName;
 import org.apache.hadoop.hbase.client.Admin;
-import org.apache.hadoop.hbase.client.Connection;
-import org.apache.hadoop.hbase.client.ConnectionFactory;
-import org.apache.hadoop.hbase.client.Get;
-import org.apache.hadoop.hbase.client.Put;
-import org.apache.hadoop.hbase.client.Result;
-import org.apache.hadoop.hbase.client.Table;
-import org.apache.hadoop.hbase.util.Bytes;
-import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
-import org.json.simple.parser.ParseException;
 
 @SuppressWarnings("serial")
 public class CreditCardFraudDetection implements java.io.Serializable {
@@ -32,10 +24,11 @@ public class CreditCardFraudDetection implements java.io.Serializable {
 	private double amount = 0.0;
 	private String postcode = null;
 	private String pos_id = null;
-	private Date transaction_dt = null;
+	private long transaction_dt = TransactionTime.NONE;
 	private String status = null;
+	private String speed_rule_path = null;
+	private long received_millis = TransactionTime.NONE;
 
-	private static Admin hBaseAdmin = null;
 	public static String hostServerIP = null;
 
 	/*
@@ -46,75 +39,75 @@ public class CreditCardFraudDetection implements java.io.Serializable {
 
 	/*
 	 * Parameterized constructor for this class. It takes the incoming record from
-	 * DStream as JSON and parse it. This constructor initializes member variables
-	 * to the values derived from parsing the JSON.
+	 * DStream as JSON and parse it through TransactionDecoder. This constructor
+	 * initializes member variables to the values derived from parsing the JSON.
 	 */
 	public CreditCardFraudDetection(String jsonObj) {
 
-		JSONParser parser = new JSONParser();
 		try {
 
-			JSONObject obj = (JSONObject) parser.parse(jsonObj);
+			byte[] data = jsonObj.getBytes(StandardCharsets.UTF_8);
+			TransactionDecoder.decodeInto(data, 0, data.length, this);
 
-			this.card_id = String.valueOf(obj.get("card_id"));
-			this.member_id = String.valueOf(obj.get("member_id"));
-			this.amount = Double.parseDouble(String.valueOf(obj.get("amount")));
-			this.postcode = String.valueOf(obj.get("postcode"));
-			this.pos_id = String.valueOf(obj.get("pos_id"));
-			this.transaction_dt = new SimpleDateFormat("dd-MM-yyyy HH:mm:ss")
-					.parse(String.valueOf(obj.get("transaction_dt")));
-
-		} catch (ParseException e) {
-			e.printStackTrace();
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
 	}
 
 	/*
-	 * getHbaseAdmin method for setting up the HBase connection. hostServerIP is
-	 * passed as command line argument and initialized by main method of
-	 * KafkaConsumer class.
+	 * setFields method is used by TransactionDecoder to fill member variables of
+	 * a decoded transaction
 	 */
-	public static Admin getHbaseAdmin() throws IOException {
+	void setFields(String card_id, String member_id, double amount, String postcode, String pos_id,
+			long transaction_dt) {
+		this.card_id = card_id;
+		this.member_id = member_id;
+		this.amount = amount;
+		this.postcode = postcode;
+		this.pos_id = pos_id;
+		this.transaction_dt = transaction_dt;
+	}
 
-		Configuration conf = HBaseConfiguration.create();
-		conf.setInt("timeout", 120000);
-		conf.set("hbase.master", hostServerIP + ":60000");
-		conf.set("hbase.zookeeper.quorum", hostServerIP);
-		conf.set("hbase.zookeeper.property.clientPort", "2181");
-		conf.set("zookeeper.znode.parent", "/hbase");
-		try {
-			Connection con = ConnectionFactory.createConnection(conf);
-			if (hBaseAdmin == null) {
-				hBaseAdmin = con.getAdmin();
-			}
+	/*
+	 * getHbaseAdmin method returns Admin from HBase connection shared by this JVM
+	 * (see HBaseConnectionHolder). hostServerIP is passed as command line argument
+	 * and initialized by main method of KafkaConsumer class. Admin is not
+	 * thread-safe, so caller should close it after use.
+	 */
+	public static Admin getHbaseAdmin() throws IOException {
+		return HBaseConnectionHolder.getAdmin();
+	}
 
-		} catch (IOException e) {
-			e.printStackTrace();
+	/*
+	 * initHostServerIP method sets hostServerIP inside Spark tasks, where static
+	 * variable set by main method on driver is not available on executors
+	 */
+	public static void initHostServerIP(String ip) {
+		if (hostServerIP == null) {
+			hostServerIP = ip;
 		}
-
-		return hBaseAdmin;
-
 	}
 
 	/*
 	 * This is the method called by DStream records. It first classify transaction
 	 * through classifyTransaction method. It then calls updateNoSQLDB method to
-	 * update data in HBase tables.
+	 * update data in HBase tables. Decision is recorded in DecisionLog, detailed
+	 * trace is printed only at verbose level.
 	 */
 	public void FraudDetection(CreditCardFraudDetection obj) {
 
 		try {
 
-			System.out.println("\n\n===================================================================");
-			/*
-			 * Print time when transaction processing started
-			 */
-			System.out.println("\nNew Transaction Processing Start Time : "
-					+ new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date()));
+			if (DecisionLog.VERBOSE) {
+				System.out.println("\n\n===================================================================");
+				/*
+				 * Print time when transaction processing started
+				 */
+				System.out.println("\nNew Transaction Processing Start Time : "
+						+ TransactionTime.now());
 
-			System.out.println("\n======== Classify Current Transaction into GENUINE/FRAUD ==========");
+				System.out.println("\n======== Classify Current Transaction into GENUINE/FRAUD ==========");
+			}
 
 			/*
 			 * classifyTransaction method to validate transaction against various rules and
@@ -122,7 +115,9 @@ public class CreditCardFraudDetection implements java.io.Serializable {
 			 */
 			classifyTransaction();
 
-			System.out.println("\n========== Update NoSQL Database for Current Transaction ==========");
+			if (DecisionLog.VERBOSE) {
+				System.out.println("\n========== Update NoSQL Database for Current Transaction ==========");
+			}
 
 			/*
 			 * updateNoSQLDB method to update NoSQL DB with card transaction details and if
@@ -130,19 +125,126 @@ public class CreditCardFraudDetection implements java.io.Serializable {
 			 */
 			updateNoSQLDB(obj);
 
-			System.out.println("\n===================================================================");
+			if (DecisionLog.VERBOSE) {
+				System.out.println("\n===================================================================");
+				/*
+				 * Print time when transaction processing finished
+				 */
+				System.out.println("\nCurrent Transaction Processing End Time : "
+						+ TransactionTime.now());
+
+				System.out.println("\n===================================================================");
+			}
+
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+
+	}
+
+	/*
+	 * FraudDetectionPartition is the batched counterpart of FraudDetection, called
+	 * once per RDD partition. Lookup rows for all cards of the partition are
+	 * fetched with one multi-Get, transactions are classified in memory and all
+	 * card_transactions_hive Puts and GENUINE-only lookup_data_hive Puts are
+	 * flushed through BufferedMutator once at the end of the partition.
+	 */
+	public static void FraudDetectionPartition(Iterator<CreditCardFraudDetection> partition) {
+
+		/*
+		 * Collect transactions of this partition and distinct Card IDs
+		 */
+		List<CreditCardFraudDetection> transactions = new ArrayList<CreditCardFraudDetection>();
+		Set<String> cardIDs = new HashSet<String>();
+		while (partition.hasNext()) {
+			CreditCardFraudDetection transaction = partition.next();
+			transactions.add(transaction);
+			if (transaction.getCard_id() != null) {
+				cardIDs.add(transaction.getCard_id());
+			}
+		}
+
+		if (transactions.isEmpty()) {
+			return;
+		}
+
+		try {
+
+			System.out.println("\nPartition Processing Start Time : "
+					+ TransactionTime.now() + " : Transactions : "
+					+ transactions.size() + " : Distinct Card IDs : " + cardIDs.size());
+
 			/*
-			 * Print time when transaction processing finished
+			 * Fetch lookup profiles of all cards in one batched read
 			 */
-			System.out.println("\nCurrent Transaction Processing End Time : "
-					+ new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date()));
+			Map<String, CardLookupProfile> profiles = getLookupProfiles(cardIDs);
 
-			System.out.println("\n===================================================================");
+			for (CreditCardFraudDetection transaction : transactions) {
 
-		} catch (IOException e) {
+				CardLookupProfile profile = profiles.get(transaction.getCard_id());
+				if (profile == null) {
+					profile = CardLookupProfile.empty(transaction.getCard_id());
+				}
+
+				transaction.classifyTransaction(profile);
+
+				/*
+				 * A card can swipe more than once in the same partition, so a GENUINE
+				 * transaction also becomes last transaction of in memory profile, same as it
+				 * becomes last transaction of lookup table.
+				 */
+				if (transaction.getStatus().equals("GENUINE")) {
+					profiles.put(transaction.getCard_id(),
+							profile.withLastTransaction(transaction.getPostcode(), transaction.getTransactionMillis()));
+				}
+			}
+
+			updateNoSQLDB(transactions);
+
+			int genuineTransactions = 0;
+			for (CreditCardFraudDetection transaction : transactions) {
+				if (transaction.getStatus().equals("GENUINE")) {
+					genuineTransactions++;
+				}
+			}
+
+			CardProfileCache cache = CardProfileCache.getLoadedInstance();
+			DistanceUtility distUtil = DistanceUtility.getInstance();
+			System.out.println("\nPartition Processing End Time : "
+					+ TransactionTime.now() + " : Transactions Written : "
+					+ transactions.size() + " : Lookup Rows Updated : " + genuineTransactions
+					+ " : Distance Cache Hits / Misses : " + distUtil.getCacheHits() + " / "
+					+ distUtil.getCacheMisses());
+			if (cache != null) {
+				System.out.println("\nCard Profile Cache : " + cache.stats());
+			}
+			DecisionLog decisionLog = DecisionLog.getInstance();
+			if (decisionLog != null) {
+				System.out.println("\nDecision Log : " + decisionLog.stats());
+			}
+			if (FraudMetrics.ENABLED) {
+				System.out.println("\nStage Latencies : " + FraudMetrics.getInstance().stats());
+			}
+
+		} catch (IOException | RuntimeException e) {
 			e.printStackTrace();
 		}
+	}
+
+	/*
+	 * updateNoSQLDB method for a list of classified transactions is batched
+	 * counterpart of updateNoSQLDB for one transaction. With HBase store,
+	 * card_transactions_hive Puts of all transactions and lookup_data_hive Puts of
+	 * GENUINE ones are flushed through BufferedMutator, in order of transactions
+	 * (see HBaseTransactionSink).
+	 */
+	public static void updateNoSQLDB(List<CreditCardFraudDetection> transactions) throws IOException {
 
+		/*
+		 * Store all transactions, and last transaction of cards with GENUINE ones,
+		 * through TransactionSink of this JVM
+		 */
+		FraudStores.getTransactionSink().writeAll(transactions);
 	}
 
 	/*
@@ -150,6 +252,32 @@ public class CreditCardFraudDetection implements java.io.Serializable {
 	 */
 	private void classifyTransaction() throws IOException {
 
+		/*
+		 * Print Card ID of current transaction
+		 */
+		if (DecisionLog.VERBOSE) {
+			System.out.println("\nCard ID of current transaction is : " + this.getCard_id());
+		}
+
+		/*
+		 * Fetch lookup profile (ucl, score, last postcode and last transaction date)
+		 * for Card ID with a single read from lookup table
+		 */
+		CardLookupProfile profile = getLookupProfile(this.getCard_id());
+		if (profile == null) {
+			profile = CardLookupProfile.empty(this.getCard_id());
+		}
+
+		classifyTransaction(profile);
+	}
+
+	/*
+	 * Classify incoming transaction as GENUINE or FRAUD against lookup profile of
+	 * its card. No HBase call is made here, so it can be used for both per record
+	 * and per partition processing.
+	 */
+	void classifyTransaction(CardLookupProfile profile) {
+
 		/*
 		 * Lets apply provided rules on each transaction:
 		 * 
@@ -162,70 +290,86 @@ public class CreditCardFraudDetection implements java.io.Serializable {
 		 * 3. If speed of travel based on distance between postcode of current and last
 		 * transaction, is more than 1km in 4sec = 0.25 km/sec then possible case of
 		 * fraud.
+		 * 
+		 * Rules (ScoreRule, UclRule, SpeedRule and any registered FraudRule) are run
+		 * cheapest first by FraudRuleEngine, which stops at first failed rule.
 		 */
 
-		double card_ucl = 0;
-		int card_score = 0;
-		double speed = 0;
+		long start = System.nanoTime();
 
-		/*
-		 * Print Card ID of current transaction
-		 */
-		System.out.println("\nCard ID of current transaction is : " + this.getCard_id());
+		if (DecisionLog.VERBOSE) {
+			System.out.println("\nUCL (Upper Control Limit) for Card ID of current transaction is : " + profile.getUcl());
+			System.out.println("\nCurrent Transaction Amount is : " + this.getAmount());
+			System.out.println("\nCredit score for Card ID of current transaction is : " + profile.getScore());
+		}
 
-		/*
-		 * Get UCL for Card ID
-		 */
-		card_ucl = getUCL(this.getCard_id());
-		System.out.println("\nUCL (Upper Control Limit) for Card ID of current transaction is : " + card_ucl);
+		FraudRuleEngine.Evaluation evaluation = FraudRuleEngine.getInstance().evaluate(this, profile);
 
 		/*
-		 * Print current transaction amount
+		 * All rules need to be passed for card transaction status to be GENUINE
 		 */
-		System.out.println("\nCurrent Transaction Amount is : " + this.getAmount());
+		this.status = evaluation.isGenuine() ? "GENUINE" : "FRAUD";
 
 		/*
-		 * Get score for Card ID
+		 * One decision record per transaction, formatted and written off task thread
 		 */
-		card_score = getScore(this.getCard_id());
-		System.out.println("\nCredit score for Card ID of current transaction is : " + card_score);
+		DecisionLog.record(this, profile, evaluation);
+		FraudMetrics.recordDecision(evaluation);
+		FraudMetrics.record(FraudMetrics.Stage.RULES, start);
 
-		/*
-		 * Get speed of current transaction in relation to last transaction
-		 */
-		speed = getSpeed();
+		if (DecisionLog.VERBOSE) {
+			printRuleOutcomes(evaluation);
+		}
+	}
 
-		/*
-		 * All 3 rules need to be passed for card transaction status to be GENUINE
-		 */
-		if ((card_score >= 200) && (this.getAmount() <= card_ucl) && (speed <= 0.25)) {
-			this.status = "GENUINE";
-			System.out.println("\nCurrent Card Transaction has passed Credit Score Validation rule : Score : "
-					+ card_score + " >= 200");
-			System.out.println(
-					"\nCurrent Card Transaction has passed UCL (Upper Control Limit) Validation rule : Amount : "
-							+ this.getAmount() + " <= " + card_ucl);
-			System.out.println(
-					"\nCurrent Card Transaction has passed Zip Code Distance Validation rule : Speed (km/sec) : "
-							+ speed + " <= 0.25");
-			System.out.println("\nCurrent Card Transaction has passed all 3 Validation rules and so status is : "
-					+ this.getStatus());
-		} else {
-			this.status = "FRAUD";
-			if (card_score < 200) {
-				System.out.println("\nCurrent Card Transaction did not pass through Credit Score Validation rule");
-			}
-			if (speed > 0.25) {
-				System.out.println("\nCurrent Card Transaction did not pass through Zip Code Distance Validation rule");
-			}
-			if (this.getAmount() > card_ucl) {
-				System.out.println(
-						"\nCurrent Card Transaction did not pass through UCL (Upper Control Limit) Validation rule");
+	/*
+	 * Print outcome of each rule and status of current transaction, at verbose
+	 * level of DecisionLog
+	 */
+	private void printRuleOutcomes(FraudRuleEngine.Evaluation evaluation) {
+
+		for (int i = 0; i < evaluation.size(); i++) {
+			FraudRule rule = evaluation.getRule(i);
+			if (!evaluation.isEvaluated(i)) {
+				System.out.println("\nCurrent Card Transaction was not checked against " + rule.getDescription());
+			} else if (evaluation.getOutcome(i)) {
+				System.out.println("\nCurrent Card Transaction has passed " + rule.getDescription());
+			} else {
+				System.out.println("\nCurrent Card Transaction did not pass through " + rule.getDescription());
 			}
+		}
+		if (evaluation.isGenuine()) {
+			System.out.println("\nCurrent Card Transaction has passed all " + evaluation.size()
+					+ " Validation rules and so status is : " + this.getStatus());
+		} else {
 			System.out.println("\nCurrent Card Transaction status is : " + this.getStatus());
 		}
 	}
 
+	/*
+	 * getLookupProfile method to look up ucl, score, last post code and last
+	 * transaction date for input Card ID from LookupStore of this JVM,
+	 * lookup_data_hive HBASE table by default (see HBaseLookupStore)
+	 */
+	public static CardLookupProfile getLookupProfile(String cardID) throws IOException {
+
+		if (cardID == null) {
+			System.out.println("\nCard ID is not present in data recieved from Kafka. Kindly check Kafka stream");
+			return null;
+		}
+		return FraudStores.getLookupStore().getProfile(cardID);
+	}
+
+	/*
+	 * getLookupProfiles method is batched form of getLookupProfile. It returns
+	 * profiles of all input Card IDs keyed by Card ID, read from LookupStore of
+	 * this JVM in one batch (one multi-Get with HBase store). Cards without a row
+	 * get empty profile.
+	 */
+	public static Map<String, CardLookupProfile> getLookupProfiles(Collection<String> cardIDs) throws IOException {
+		return FraudStores.getLookupStore().getProfiles(cardIDs);
+	}
+
 	/*
 	 * getUCL method to look up upper control limit for input Card ID from
 	 * lookup_data_hive HBASE table
@@ -235,39 +379,8 @@ public class CreditCardFraudDetection implements java.io.Serializable {
 		if (cardID == null) {
 			System.out.println("\nCard ID is not present in data recieved from Kafka. Kindly check Kafka stream");
 			return -1d;
-		} else {
-
-			/*
-			 * Call getHbaseAdmin() method only if connection is not already established
-			 */
-			if (hBaseAdmin == null) {
-				hBaseAdmin = getHbaseAdmin();
-			}
-
-			/*
-			 * Setup table name, get data for input card id and get ucl from result set. ucl
-			 * belongs to lookup_card_family column family in look up table
-			 * lookup_data_hive.
-			 */
-			String table = "lookup_data_hive";
-			double val = 0;
-			try {
-				Get cardId = new Get(Bytes.toBytes(cardID));
-				Table htable = hBaseAdmin.getConnection().getTable(TableName.valueOf(table));
-				Result result = htable.get(cardId);
-				byte[] value = result.getValue(Bytes.toBytes("lookup_card_family"), Bytes.toBytes("ucl"));
-				if (value != null) {
-					val = Double.parseDouble(Bytes.toString(value));
-				} else {
-					val = 0d;
-				}
-
-			} catch (Exception e) {
-				e.printStackTrace();
-			}
-
-			return val;
 		}
+		return getLookupProfile(cardID).getUcl();
 	}
 
 	/*
@@ -279,129 +392,8 @@ public class CreditCardFraudDetection implements java.io.Serializable {
 		if (cardID == null) {
 			System.out.println("\nCard ID is not present in data recieved from Kafka. Kindly check Kafka stream");
 			return -1;
-		} else {
-
-			/*
-			 * Call getHbaseAdmin() method only if connection is not already established
-			 */
-			if (hBaseAdmin == null) {
-				hBaseAdmin = getHbaseAdmin();
-			}
-
-			/*
-			 * Setup table name, get data for input card id and get score from result set.
-			 * score belongs to lookup_card_family column family in look up table
-			 * lookup_data_hive.
-			 */
-			String table = "lookup_data_hive";
-			int val = 0;
-			try {
-				Get cardId = new Get(Bytes.toBytes(cardID));
-				Table htable = hBaseAdmin.getConnection().getTable(TableName.valueOf(table));
-				Result result = htable.get(cardId);
-				byte[] value = result.getValue(Bytes.toBytes("lookup_card_family"), Bytes.toBytes("score"));
-				if (value != null) {
-					val = Integer.parseInt(Bytes.toString(value));
-				} else
-					val = 0;
-
-			} catch (Exception e) {
-				e.printStackTrace();
-			}
-
-			return val;
 		}
-	}
-
-	/*
-	 * getSpeed method to calculate speed in km/sec based on distance between post
-	 * code of current and last transaction. This method makes of DistanceUtility
-	 * class provided
-	 */
-	private double getSpeed() {
-
-		double distance = 0;
-		long timeDifference = 0L;
-		double speed = 0;
-
-		try {
-
-			/*
-			 * Create an object of DistanceUtility class
-			 */
-			DistanceUtility distUtil = new DistanceUtility();
-
-			/*
-			 * Get last post code of Card ID from lookup table in HBase
-			 */
-			String lastPostCode = getPostCode(this.getCard_id());
-			System.out.println("\nLast Post Code for Card ID of current transaction is : " + lastPostCode);
-
-			/*
-			 * Print post code of current transaction
-			 */
-			System.out.println("\nCurrent Post Code for Card ID of current transaction is : " + this.getPostcode());
-
-			/*
-			 * Get last transaction_dt of Card ID from Lookup table in HBase
-			 */
-			Date lastTransactionDt = getTransactionDate(this.getCard_id());
-			System.out.println("\nLast Transaction Date for Card ID of current transaction is : "
-					+ new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(lastTransactionDt));
-
-			/*
-			 * Print transaction date of current transaction
-			 */
-			System.out.println("\nCurrent Transaction Date for Card ID of current transaction is : "
-					+ new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(this.getTransaction_dt()));
-
-			/*
-			 * Get distance between 2 post code, calculated by following method in
-			 * DistanceUtility class. Distance is in kilometers.
-			 */
-			distance = distUtil.getDistanceViaZipCode(lastPostCode, this.getPostcode());
-			System.out
-					.println("\nDistance (returned by DistanceUtility) between current and last postcode (in km) is : "
-							+ distance);
-
-			/*
-			 * Time difference between 2 transaction dates is calculated as below. The
-			 * difference is returned in milliseconds so dividing by 1000 to get time in
-			 * seconds. For many transactions, the incoming transaction date is less than
-			 * last transaction date stored in lookup table so using abs method.
-			 */
-			timeDifference = (java.lang.Math.abs(this.getTransaction_dt().getTime() - lastTransactionDt.getTime()))
-					/ 1000;
-			System.out.println("\nAbsolute Time Difference between current and last transaction (in seconds) is : "
-					+ timeDifference);
-
-			/*
-			 * Speed is being calculated in km/sec
-			 * 
-			 * At one instance, time difference was zero (2018-06-21 15:29:59) and last and
-			 * current post code (55311) were same, distance utility returned non zero value
-			 * (9.493073054631141E-5) which is quite small as such but still a non zero
-			 * value was returned, due to which speed came out to be infinity for card_id =
-			 * '4838289241690162'. So added this check if last and current post code are
-			 * same then consider speed as 0.
-			 */
-
-			if (lastPostCode.equals(this.getPostcode())) {
-				System.out.println(
-						"\nSince Last Post Code and Current Post Code are same, so distance is 0 and so considering speed as 0");
-				speed = 0;
-			} else {
-				speed = distance / timeDifference;
-			}
-
-			System.out.println("\nSpeed (Distance / Time) : " + speed + " km/second ");
-
-		} catch (Exception e) {
-
-			e.printStackTrace();
-		}
-
-		return speed;
+		return getLookupProfile(cardID).getScore();
 	}
 
 	/*
@@ -410,41 +402,8 @@ public class CreditCardFraudDetection implements java.io.Serializable {
 	 */
 	public static String getPostCode(String cardID) throws IOException {
 
-		if (cardID == null) {
-			System.out.println("\nCard ID is not present in data recieved from Kafka. Kindly check Kafka stream");
-			return null;
-		} else {
-
-			/*
-			 * Call getHbaseAdmin() method only if connection is not already established
-			 */
-			if (hBaseAdmin == null) {
-				hBaseAdmin = getHbaseAdmin();
-			}
-
-			/*
-			 * Setup table name, get data for input card id and get postcode from result
-			 * set. postcode belongs to lookup_transaction_family column family in look up
-			 * table lookup_data_hive.
-			 */
-			String table = "lookup_data_hive";
-			String val = null;
-			try {
-				Get cardId = new Get(Bytes.toBytes(cardID));
-				Table htable = hBaseAdmin.getConnection().getTable(TableName.valueOf(table));
-				Result result = htable.get(cardId);
-				byte[] value = result.getValue(Bytes.toBytes("lookup_transaction_family"), Bytes.toBytes("postcode"));
-				if (value != null) {
-					val = Bytes.toString(value);
-				} else
-					val = null;
-
-			} catch (Exception e) {
-				e.printStackTrace();
-			}
-
-			return val;
-		}
+		CardLookupProfile profile = getLookupProfile(cardID);
+		return (profile == null) ? null : profile.getPostcode();
 	}
 
 	/*
@@ -453,45 +412,13 @@ public class CreditCardFraudDetection implements java.io.Serializable {
 	 */
 	public static Date getTransactionDate(String cardID) throws IOException {
 
-		if (cardID == null) {
-			System.out.println("\nCard ID is not present in data recieved from Kafka. Kindly check Kafka stream");
-			return null;
-		} else {
-
-			/*
-			 * Call getHbaseAdmin() method only if connection is not already established
-			 */
-			if (hBaseAdmin == null) {
-				hBaseAdmin = getHbaseAdmin();
-			}
-
-			/*
-			 * Setup table name, get data for input card id and get transaction_dt from
-			 * result set. transaction_dt belongs to lookup_transaction_family column family
-			 * in look up table lookup_data_hive.
-			 */
-			String table = "lookup_data_hive";
-			Date val = null;
-			try {
-				Get cardId = new Get(Bytes.toBytes(cardID));
-				Table htable = hBaseAdmin.getConnection().getTable(TableName.valueOf(table));
-				Result result = htable.get(cardId);
-				byte[] value = result.getValue(Bytes.toBytes("lookup_transaction_family"),
-						Bytes.toBytes("transaction_dt"));
-				if (value != null) {
-					val = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").parse(Bytes.toString(value));
-				} else
-					val = null;
-
-			} catch (Exception e) {
-				e.printStackTrace();
-			}
-			return val;
-		}
+		CardLookupProfile profile = getLookupProfile(cardID);
+		return (profile == null) ? null : profile.getTransaction_dt();
 	}
 
 	/*
-	 * updateNoSQLDB method performs 2 activities:
+	 * updateNoSQLDB method performs 2 activities through TransactionSink of this
+	 * JVM (see HBaseTransactionSink):
 	 * 
 	 * 1. It inserts incoming card transaction details in card_transactions_hive
 	 * HBASE table.
@@ -501,134 +428,14 @@ public class CreditCardFraudDetection implements java.io.Serializable {
 	 */
 	public static void updateNoSQLDB(CreditCardFraudDetection transactionData) throws IOException {
 
-		try {
-
-			/*
-			 * Call getHbaseAdmin() method only if connection is not already established
-			 */
-			if (hBaseAdmin == null) {
-				hBaseAdmin = getHbaseAdmin();
-			}
-
-			/*
-			 * Print Card ID of current transaction
-			 */
-			System.out.println("\nCard ID of current transaction is : " + transactionData.getCard_id());
-
-			/*
-			 * Convert incoming transaction date to specified format
-			 */
-			DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-			String val = dateFormat.format(transactionData.getTransaction_dt());
-
-			Double Amount = transactionData.getAmount();
-
-			String transactionTable = "card_transactions_hive";
-
-			/*
-			 * Check if table exists
-			 */
-			if (hBaseAdmin.tableExists(TableName.valueOf(transactionTable))) {
-				Table htable = hBaseAdmin.getConnection().getTable(TableName.valueOf(transactionTable));
-
-				/*
-				 * Use randomUUID as row key
-				 */
-
-				UUID transactionID = UUID.randomUUID();
-
-				Put p = new Put(Bytes.toBytes(transactionID.toString()));
-
-				/*
-				 * Add column values for each column
-				 */
-				p.addColumn(Bytes.toBytes("card_transactions_family"), Bytes.toBytes("card_id"),
-						Bytes.toBytes(transactionData.getCard_id()));
-				p.addColumn(Bytes.toBytes("card_transactions_family"), Bytes.toBytes("member_id"),
-						Bytes.toBytes(transactionData.getMember_id()));
-				p.addColumn(Bytes.toBytes("card_transactions_family"), Bytes.toBytes("amount"),
-						Bytes.toBytes(Amount.toString()));
-				p.addColumn(Bytes.toBytes("card_transactions_family"), Bytes.toBytes("postcode"),
-						Bytes.toBytes(transactionData.getPostcode()));
-				p.addColumn(Bytes.toBytes("card_transactions_family"), Bytes.toBytes("pos_id"),
-						Bytes.toBytes(transactionData.getPos_id()));
-				p.addColumn(Bytes.toBytes("card_transactions_family"), Bytes.toBytes("transaction_dt"),
-						Bytes.toBytes(val));
-				p.addColumn(Bytes.toBytes("card_transactions_family"), Bytes.toBytes("status"),
-						Bytes.toBytes(transactionData.getStatus()));
-
-				htable.put(p);
-				System.out.println("\nCurrent Transaction Details are populated in Card Transactions HBase Table : "
-						+ transactionTable);
-			} else {
-				System.out.println("\nHBase Table named : " + transactionTable + " : does not exist");
-			}
-
-		} catch (Exception e) {
-			e.printStackTrace();
-		}
-
 		/*
-		 * Check if status is Genuine to update lookup_data_hive HBase table
+		 * Print Card ID of current transaction
 		 */
-		if (transactionData.getStatus().equals("GENUINE")) {
-
-			System.out.println("\nCurrent Card Transaction status is GENUINE so updating lookup table");
-
-			try {
-
-				/*
-				 * Call getHbaseAdmin() method only if connection is not already established
-				 */
-				if (hBaseAdmin == null) {
-					hBaseAdmin = getHbaseAdmin();
-				}
-
-				/*
-				 * Convert incoming transaction date to specified format
-				 */
-				DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-				String val = dateFormat.format(transactionData.getTransaction_dt());
-
-				String lookupTable = "lookup_data_hive";
-
-				/*
-				 * Check if table exists
-				 */
-				if (hBaseAdmin.tableExists(TableName.valueOf(lookupTable))) {
-					Table htable = hBaseAdmin.getConnection().getTable(TableName.valueOf(lookupTable));
-
-					/*
-					 * Instantiate Put class to Card ID row key in lookup_data_hive table
-					 */
-					Put p = new Put(Bytes.toBytes(transactionData.getCard_id()));
-
-					/*
-					 * Add column values for postcode and transaction_dt
-					 */
-					p.addColumn(Bytes.toBytes("lookup_transaction_family"), Bytes.toBytes("postcode"),
-							Bytes.toBytes(transactionData.getPostcode()));
-					p.addColumn(Bytes.toBytes("lookup_transaction_family"), Bytes.toBytes("transaction_dt"),
-							Bytes.toBytes(val));
-
-					/*
-					 * Save put instance to HTable.
-					 */
-					htable.put(p);
-					System.out.println(
-							"\nPostcode and Transaction Date updated for Card ID of current transaction in lookup HBase table : "
-									+ lookupTable);
-
-				} else {
-					System.out.println("\nHBase Lookup Table named : " + lookupTable + " : does not exist");
-				}
-			} catch (Exception e) {
-				e.printStackTrace();
-			}
-		} else {
-			System.out.println("\nCurrent Card Transaction status is FRAUD so not updating lookup table");
+		if (DecisionLog.VERBOSE) {
+			System.out.println("\nCard ID of current transaction is : " + transactionData.getCard_id());
 		}
 
+		FraudStores.getTransactionSink().write(transactionData);
 	}
 
 	/*
@@ -636,7 +443,7 @@ public class CreditCardFraudDetection implements java.io.Serializable {
 	 */
 	public static void closeConnection() throws IOException {
 		System.out.println("\nClosing the connection now...");
-		hBaseAdmin.getConnection().close();
+		HBaseConnectionHolder.close();
 		System.out.println("\nConnection closed");
 
 	}
@@ -680,6 +487,14 @@ public class CreditCardFraudDetection implements java.io.Serializable {
 	 * getter method for transaction_dt member variable
 	 */
 	public Date getTransaction_dt() {
+		return (transaction_dt == TransactionTime.NONE) ? null : new Date(transaction_dt);
+	}
+
+	/*
+	 * getter method for transaction_dt member variable as epoch milliseconds,
+	 * TransactionTime.NONE if there is none
+	 */
+	public long getTransactionMillis() {
 		return transaction_dt;
 	}
 
@@ -690,4 +505,47 @@ public class CreditCardFraudDetection implements java.io.Serializable {
 		return status;
 	}
 
+	/*
+	 * getter method for speed_rule_path member variable, telling how Zip Code
+	 * Distance Validation rule was decided for this transaction
+	 */
+	public String getSpeed_rule_path() {
+		return speed_rule_path;
+	}
+
+	/*
+	 * setter method for speed_rule_path member variable, set by SpeedRule
+	 */
+	void setSpeed_rule_path(String speed_rule_path) {
+		this.speed_rule_path = speed_rule_path;
+	}
+
+	/*
+	 * getter method for received_millis member variable, time transaction was
+	 * received by Kafka (record timestamp), TransactionTime.NONE if unknown
+	 */
+	public long getReceivedMillis() {
+		return received_millis;
+	}
+
+	/*
+	 * setter method for received_millis member variable, set from Kafka record
+	 * timestamp when transaction is taken from stream
+	 */
+	public void setReceivedMillis(long received_millis) {
+		this.received_millis = received_millis;
+	}
+
+	/*
+	 * Incoming fields of transaction, in format of input JSON, used for
+	 * verification output
+	 */
+	@Override
+	public String toString() {
+		return "{\"card_id\":" + card_id + ",\"member_id\":" + member_id + ",\"amount\":" + amount + ",\"postcode\":"
+				+ postcode + ",\"pos_id\":" + pos_id + ",\"transaction_dt\":\""
+				+ TransactionTime.formatInput(transaction_dt)
+				+ "\"}";
+	}
+
 }
@@ -0,0 +1,404 @@
+package com.upgrad.creditcardfrauddetection;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * DecisionLog is the audit sink of classification. Each classified transaction
+ * gives one compact decision record (inputs, lookup profile, outcome of each
+ * rule and verdict), written as one line to a rolling file instead of about 20
+ * System.out lines per transaction.
+ *
+ * Outcome of each rule is kept as <rule name>_rule : true, false or null when
+ * FraudRuleEngine stopped before the rule (see fraud.rules.explain).
+ *
+ * Task threads only put a reference to record into a bounded lock-free ring
+ * buffer (multi producer, single consumer) and never block; if buffer is full
+ * record is dropped and counted. A background daemon thread drains buffer,
+ * formats records and writes them to fraud.log.dir/decisions.log, rolled at
+ * fraud.log.max.bytes into decisions.log.1 .. decisions.log.N
+ * (fraud.log.max.files).
+ *
+ * fraud.log.level selects verbosity :
+ *
+ * off : no decision records
+ *
+ * decision : decision records only (default)
+ *
+ * verbose : decision records and detailed System.out trace of each
+ * transaction, as printed before
+ *
+ * fraud.log.sample.rate (0 to 1, default 1) samples GENUINE decisions. FRAUD
+ * decisions are always recorded.
+ */
+final class DecisionLog {
+
+	static final String LEVEL_OFF = "off";
+	static final String LEVEL_DECISION = "decision";
+	static final String LEVEL_VERBOSE = "verbose";
+
+	private static final String LEVEL = System.getProperty("fraud.log.level", LEVEL_DECISION);
+
+	/*
+	 * true if decision records are written
+	 */
+	static final boolean ENABLED = !LEVEL.equals(LEVEL_OFF);
+
+	/*
+	 * true if detailed trace of each transaction is printed to System.out
+	 */
+	static final boolean VERBOSE = LEVEL.equals(LEVEL_VERBOSE);
+
+	static final int DEFAULT_CAPACITY = 1 << 16;
+	static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+	static final int DEFAULT_MAX_FILES = 10;
+
+	private static final String FILE_NAME = "decisions.log";
+
+	private static volatile DecisionLog instance = null;
+
+	/*
+	 * One decision, formatted by writer thread. Transaction is not changed once
+	 * classified and profile is immutable, so both are referenced, not copied.
+	 */
+	private static final class Decision {
+		final long loggedAt;
+		final CreditCardFraudDetection transaction;
+		final CardLookupProfile profile;
+		final FraudRuleEngine.Evaluation evaluation;
+
+		Decision(CreditCardFraudDetection transaction, CardLookupProfile profile,
+				FraudRuleEngine.Evaluation evaluation) {
+			this.loggedAt = System.currentTimeMillis();
+			this.transaction = transaction;
+			this.profile = profile;
+			this.evaluation = evaluation;
+		}
+	}
+
+	/*
+	 * Ring buffer : slot i holds a record when its sequence is one past its
+	 * position, and is free for position p when its sequence equals p
+	 */
+	private final int mask;
+	private final AtomicReferenceArray<Decision> slots;
+	private final AtomicLongArray sequences;
+	private final AtomicLong tail = new AtomicLong();
+	private long head = 0L;
+
+	private final double sampleRate;
+	private final File directory;
+	private final long maxBytes;
+	private final int maxFiles;
+
+	private final LongAdder recorded = new LongAdder();
+	private final LongAdder sampledOut = new LongAdder();
+	private final LongAdder dropped = new LongAdder();
+	private final LongAdder written = new LongAdder();
+
+	private final Thread writerThread;
+	private volatile boolean running = true;
+
+	private Writer writer = null;
+	private long fileBytes = 0L;
+
+	private DecisionLog(int capacity, double sampleRate, File directory, long maxBytes, int maxFiles) {
+
+		int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+		this.mask = size - 1;
+		this.slots = new AtomicReferenceArray<Decision>(size);
+		this.sequences = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++) {
+			sequences.set(i, i);
+		}
+		this.sampleRate = sampleRate;
+		this.directory = directory;
+		this.maxBytes = maxBytes;
+		this.maxFiles = Math.max(1, maxFiles);
+
+		this.writerThread = new Thread(this::drainLoop, "decision-log-writer");
+		this.writerThread.setDaemon(true);
+	}
+
+	/*
+	 * Returns decision log of this JVM, or null if it is off
+	 */
+	static DecisionLog getInstance() {
+
+		if (!ENABLED) {
+			return null;
+		}
+		DecisionLog log = instance;
+		if (log == null) {
+			synchronized (DecisionLog.class) {
+				log = instance;
+				if (log == null) {
+					log = new DecisionLog(Integer.getInteger("fraud.log.capacity", DEFAULT_CAPACITY),
+							Double.parseDouble(System.getProperty("fraud.log.sample.rate", "1")),
+							new File(System.getProperty("fraud.log.dir", "decision-logs")),
+							Long.getLong("fraud.log.max.bytes", DEFAULT_MAX_BYTES),
+							Integer.getInteger("fraud.log.max.files", DEFAULT_MAX_FILES));
+					log.writerThread.start();
+					final DecisionLog started = log;
+					Runtime.getRuntime().addShutdownHook(new Thread(() -> started.close(), "decision-log-shutdown"));
+					instance = log;
+				}
+			}
+		}
+		return log;
+	}
+
+	/*
+	 * Record decision of a classified transaction, if decision log is on
+	 */
+	static void record(CreditCardFraudDetection transaction, CardLookupProfile profile,
+			FraudRuleEngine.Evaluation evaluation) {
+		DecisionLog log = getInstance();
+		if (log != null) {
+			log.offer(transaction, profile, evaluation);
+		}
+	}
+
+	/*
+	 * Put decision into ring buffer without blocking. Returns false if it was
+	 * sampled out or buffer was full.
+	 */
+	boolean offer(CreditCardFraudDetection transaction, CardLookupProfile profile,
+			FraudRuleEngine.Evaluation evaluation) {
+
+		if (sampleRate < 1d && "GENUINE".equals(transaction.getStatus())
+				&& ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+			sampledOut.increment();
+			return false;
+		}
+
+		Decision decision = new Decision(transaction, profile, evaluation);
+		while (true) {
+			long position = tail.get();
+			int index = (int) position & mask;
+			long diff = sequences.get(index) - position;
+			if (diff == 0) {
+				if (tail.compareAndSet(position, position + 1)) {
+					slots.lazySet(index, decision);
+					sequences.lazySet(index, position + 1);
+					recorded.increment();
+					return true;
+				}
+			} else if (diff < 0) {
+				dropped.increment();
+				return false;
+			}
+		}
+	}
+
+	/*
+	 * Take next decision from ring buffer, or null if empty. Called by writer
+	 * thread only.
+	 */
+	private Decision poll() {
+		int index = (int) head & mask;
+		if (sequences.get(index) != head + 1) {
+			return null;
+		}
+		Decision decision = slots.get(index);
+		slots.lazySet(index, null);
+		sequences.lazySet(index, head + mask + 1);
+		head++;
+		return decision;
+	}
+
+	/*
+	 * Writer thread : write decisions as they come, flush whenever buffer is
+	 * drained, park briefly when there is nothing to write
+	 */
+	private void drainLoop() {
+
+		StringBuilder line = new StringBuilder(256);
+		while (running || sequences.get((int) head & mask) == head + 1) {
+			Decision decision = poll();
+			if (decision == null) {
+				flush();
+				LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+				continue;
+			}
+			line.setLength(0);
+			format(decision, line);
+			write(line);
+		}
+		flush();
+	}
+
+	/*
+	 * Decision as one line of JSON
+	 */
+	private static void format(Decision decision, StringBuilder line) {
+
+		CreditCardFraudDetection transaction = decision.transaction;
+		CardLookupProfile profile = decision.profile;
+
+		line.append("{\"logged_at\":\"").append(TransactionTime.format(decision.loggedAt));
+		line.append("\",\"card_id\":\"");
+		appendEscaped(line, transaction.getCard_id());
+		line.append("\",\"member_id\":\"");
+		appendEscaped(line, transaction.getMember_id());
+		line.append("\",\"amount\":").append(transaction.getAmount());
+		line.append(",\"postcode\":\"");
+		appendEscaped(line, transaction.getPostcode());
+		line.append("\",\"pos_id\":\"");
+		appendEscaped(line, transaction.getPos_id());
+		line.append("\",\"transaction_dt\":\"").append(TransactionTime.format(transaction.getTransactionMillis()));
+		line.append("\",\"ucl\":").append(profile.getUcl());
+		line.append(",\"score\":").append(profile.getScore());
+		line.append(",\"last_postcode\":\"");
+		appendEscaped(line, profile.getPostcode());
+		line.append("\",\"last_transaction_dt\":\"").append(TransactionTime.format(profile.getTransactionMillis()));
+		line.append('"');
+		FraudRuleEngine.Evaluation evaluation = decision.evaluation;
+		for (int i = 0; i < evaluation.size(); i++) {
+			line.append(",\"");
+			appendEscaped(line, evaluation.getRule(i).getName());
+			line.append("_rule\":").append(evaluation.getOutcome(i));
+		}
+		String speedRulePath = transaction.getSpeed_rule_path();
+		line.append(",\"speed_rule_path\":");
+		if (speedRulePath == null) {
+			line.append("null");
+		} else {
+			line.append('"');
+			appendEscaped(line, speedRulePath);
+			line.append('"');
+		}
+		line.append(",\"status\":\"");
+		appendEscaped(line, transaction.getStatus());
+		line.append("\"}\n");
+	}
+
+	/*
+	 * Append string as content of a JSON string, escaping quote, backslash and
+	 * control characters. Null is appended as null text, as before.
+	 */
+	private static void appendEscaped(StringBuilder line, String value) {
+
+		if (value == null) {
+			line.append("null");
+			return;
+		}
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '"':
+				line.append("\\\"");
+				break;
+			case '\\':
+				line.append("\\\\");
+				break;
+			case '\n':
+				line.append("\\n");
+				break;
+			case '\r':
+				line.append("\\r");
+				break;
+			case '\t':
+				line.append("\\t");
+				break;
+			default:
+				if (c < 0x20 || c == 0x2028 || c == 0x2029) {
+					line.append(String.format("\\u%04x", (int) c));
+				} else {
+					line.append(c);
+				}
+			}
+		}
+	}
+
+	private void write(CharSequence line) {
+		try {
+			if (writer == null || fileBytes >= maxBytes) {
+				roll();
+			}
+			writer.append(line);
+			fileBytes += line.length();
+			written.increment();
+		} catch (IOException e) {
+			e.printStackTrace();
+			dropped.increment();
+		}
+	}
+
+	/*
+	 * Close current file, shift decisions.log.N-1 .. decisions.log into
+	 * decisions.log.N .. decisions.log.1 (oldest is deleted) and open a new
+	 * decisions.log. An existing decisions.log is appended to on first open.
+	 */
+	private void roll() throws IOException {
+
+		File current = new File(directory, FILE_NAME);
+		if (writer != null) {
+			writer.close();
+			writer = null;
+			for (int i = maxFiles - 1; i >= 0; i--) {
+				File from = (i == 0) ? current : new File(directory, FILE_NAME + "." + i);
+				File to = new File(directory, FILE_NAME + "." + (i + 1));
+				if (from.exists()) {
+					to.delete();
+					from.renameTo(to);
+				}
+			}
+		} else if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Decision log directory could not be created : " + directory);
+		}
+
+		fileBytes = current.exists() ? current.length() : 0L;
+		writer = new BufferedWriter(
+				new OutputStreamWriter(new FileOutputStream(current, true), StandardCharsets.UTF_8), 64 * 1024);
+	}
+
+	private void flush() {
+		if (writer != null) {
+			try {
+				writer.flush();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/*
+	 * Stop writer thread once buffer is drained and close file
+	 */
+	void close() {
+		running = false;
+		try {
+			writerThread.join(TimeUnit.SECONDS.toMillis(10));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (writer != null) {
+			try {
+				writer.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/*
+	 * One line summary of decision log counters for logging
+	 */
+	String stats() {
+		return "Recorded : " + recorded.sum() + " : Written : " + written.sum() + " : Sampled Out : " + sampledOut.sum()
+				+ " : Dropped : " + dropped.sum();
+	}
+}
@@ -0,0 +1,94 @@
+package com.upgrad.creditcardfrauddetection;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded, thread-safe cache of distances between pairs of zip codes. Card
+ * traffic is very local, so same (last postcode, current postcode) pairs keep
+ * repeating and their distance is served from here instead of being computed
+ * again.
+ *
+ * Cache is a direct-mapped table of immutable entries: each pair of zip codes
+ * maps to one slot and a new pair evicts whatever pair was in its slot, so
+ * size never grows beyond capacity. Reads and writes need no lock. Distance is
+ * symmetric, so pair is ordered (smaller zip code first) before lookup and both
+ * directions share an entry.
+ *
+ */
+final class DistanceCache {
+
+	/*
+	 * Immutable entry, replaced as a whole so readers never see a key with value
+	 * of another pair
+	 */
+	private static final class Entry {
+		final long key;
+		final double distance;
+
+		Entry(long key, double distance) {
+			this.key = key;
+			this.distance = distance;
+		}
+	}
+
+	private final AtomicReferenceArray<Entry> entries;
+	private final int mask;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * @param capacity - maximum number of pairs kept, rounded up to power of two
+	 */
+	DistanceCache(int capacity) {
+		int size = (capacity <= 1) ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+		this.entries = new AtomicReferenceArray<Entry>(size);
+		this.mask = size - 1;
+	}
+
+	/**
+	 * Key of pair of encoded zip codes, independent of their order
+	 */
+	static long key(int zipCode1, int zipCode2) {
+		int low = Math.min(zipCode1, zipCode2);
+		int high = Math.max(zipCode1, zipCode2);
+		return ((long) low << 32) | (high & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Returns cached distance for pair key, or NaN if not cached
+	 */
+	double get(long key) {
+		Entry entry = entries.get(slot(key));
+		if (entry != null && entry.key == key) {
+			hits.increment();
+			return entry.distance;
+		}
+		misses.increment();
+		return Double.NaN;
+	}
+
+	/**
+	 * Caches distance of pair key, evicting pair which was in same slot
+	 */
+	void put(long key, double distance) {
+		entries.set(slot(key), new Entry(key, distance));
+	}
+
+	private int slot(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h >>> 32) & mask;
+	}
+
+	long getHits() {
+		return hits.sum();
+	}
+
+	long getMisses() {
+		return misses.sum();
+	}
+
+	int capacity() {
+		return mask + 1;
+	}
+}
@@ -1,97 +1,287 @@
 package com.upgrad.creditcardfrauddetection;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
 
 /**
  * Utility class that reads file zipCodePosId.csv and using same if two zip
  * codes are provided, it returns distances.
+ * 
+ * The file is read only once per JVM. Use getInstance() to get the shared,
+ * read-only index which is safe to use from all task threads. If binary
+ * snapshot zipCodePosId.bin (see ZipCodeSnapshotConverter) is present, it is
+ * loaded instead of csv file.
+ * 
+ * Exact distances are memoised in a DistanceCache shared by all task threads.
+ * Its size is set by system property fraud.distance.cache.size (number of zip
+ * code pairs, 0 disables cache).
  *
  */
 
-class ZipCodeData {
-	double lat;
-	double lon;
-	String city;
-	String state_name;
-	String postId;
-
-	public ZipCodeData(double lat, double lon, String city, String state_name, String postId) {
-		this.lat = lat;
-		this.lon = lon;
-		this.city = city;
-		this.state_name = state_name;
-		this.postId = postId;
-	}
-}
-
 class DistanceUtility {
 
-	HashMap<String, ZipCodeData> zipCodesMap = new HashMap<String, ZipCodeData>();
+	static final String ZIP_CODE_CSV_FILE = "zipCodePosId.csv";
+	static final String ZIP_CODE_SNAPSHOT_FILE = "zipCodePosId.bin";
+
+	private static volatile DistanceUtility instance = null;
+
+	static final int DEFAULT_DISTANCE_CACHE_SIZE = 65536;
 
 	/**
-	 * Initialize zip codes using given file
+	 * Outcome of a threshold-only distance check, telling whether distance is
+	 * within limit and how that was decided
+	 */
+	enum DistanceCheck {
+		/*
+		 * Decided by precomputed reach of zip codes, no distance computed
+		 */
+		WITHIN_REACHABILITY_BOUND(true, false),
+		/*
+		 * Decided by approximate distance, clear of the limit by its error bound
+		 */
+		WITHIN_APPROXIMATE(true, false), BEYOND_APPROXIMATE(false, false),
+		/*
+		 * Approximate distance was too close to the limit, exact distance computed
+		 */
+		WITHIN_EXACT(true, true), BEYOND_EXACT(false, true);
+
+		private final boolean within;
+		private final boolean exact;
+
+		DistanceCheck(boolean within, boolean exact) {
+			this.within = within;
+			this.exact = exact;
+		}
+
+		boolean isWithin() {
+			return within;
+		}
+
+		boolean isExact() {
+			return exact;
+		}
+	}
+
+	private final ZipCodeStore zipCodes;
+	private final DistanceCache distanceCache;
+
+	/**
+	 * Returns index shared by this JVM, loading zip codes from file on first call.
+	 * If loading fails, exception is thrown and next call tries again.
 	 * 
 	 * @throws IOException
 	 * @throws NumberFormatException
 	 */
-	public DistanceUtility() throws NumberFormatException, IOException {
+	public static DistanceUtility getInstance() throws NumberFormatException, IOException {
+		DistanceUtility util = instance;
+		if (util == null) {
+			synchronized (DistanceUtility.class) {
+				util = instance;
+				if (util == null) {
+					util = new DistanceUtility();
+					instance = util;
+				}
+			}
+		}
+		return util;
+	}
 
-		BufferedReader br = new BufferedReader(new FileReader("zipCodePosId.csv"));
+	/**
+	 * Returns index shared by this JVM if it is already loaded, else null. Used by
+	 * metrics, which should not load zip codes.
+	 */
+	static DistanceUtility getLoadedInstance() {
+		return instance;
+	}
 
-		String line = null;
+	/**
+	 * Initialize zip codes using snapshot file if present, else given csv file.
+	 * Both are looked up in fraud.zipcode.dir, working directory by default.
+	 * 
+	 * @throws IOException
+	 * @throws NumberFormatException
+	 */
+	private DistanceUtility() throws NumberFormatException, IOException {
 
-		while ((line = br.readLine()) != null) {
-			String str[] = line.split(",");
+		String dir = System.getProperty("fraud.zipcode.dir", ".");
+		File snapshot = new File(dir, ZIP_CODE_SNAPSHOT_FILE);
+		if (snapshot.isFile()) {
+			this.zipCodes = ZipCodeStore.fromSnapshot(snapshot.getPath());
+		} else {
+			this.zipCodes = ZipCodeStore.fromCsv(new File(dir, ZIP_CODE_CSV_FILE).getPath());
+		}
 
-			String zipCode = str[0];
+		int cacheSize = Integer.getInteger("fraud.distance.cache.size", DEFAULT_DISTANCE_CACHE_SIZE);
+		this.distanceCache = (cacheSize > 0) ? new DistanceCache(cacheSize) : null;
+	}
 
-			double lat = Double.parseDouble(str[1]);
-			double lon = Double.parseDouble(str[2]);
-			;
-			String city = str[3];
-			String state_name = str[4];
-			String postId = str[5];
+	/**
+	 * Mean earth radius in km matching scale of the original formula (60 * 1.1515
+	 * statute miles per degree of arc, 1.609344 km per mile), so distances stay
+	 * comparable with those computed before
+	 */
+	static final double EARTH_RADIUS_KM = 60 * 1.1515 * 1.609344 * 180.0 / Math.PI;
 
-			ZipCodeData zipCodeData = new ZipCodeData(lat, lon, city, state_name, postId);
+	/**
+	 * Approximate distance is used only up to this distance. Up to 1000 km, on
+	 * latitudes of zipCodePosId.csv, relative error of approximation measured
+	 * below 1.2 %, so APPROXIMATION_ERROR bounds it with some margin.
+	 */
+	static final double APPROXIMATION_RANGE_KM = 1000.0;
+	static final double APPROXIMATION_ERROR = 0.02;
 
-			zipCodesMap.put(zipCode, zipCodeData);
+	/**
+	 *
+	 * @param zipcode1 - zip code of previous transaction
+	 * @param zipcode2 - zip code of current transaction
+	 * @return distance between two zip codes
+	 */
+	public double getDistanceViaZipCode(String zipcode1, String zipcode2) {
+		return cachedDistance(slotOf(zipcode1), slotOf(zipcode2));
+	}
+
+	/**
+	 *
+	 * @param zipcode1    - zip code of previous transaction
+	 * @param zipcode2    - zip code of current transaction
+	 * @param approximate - if true, distance may be approximated within
+	 *                    APPROXIMATION_ERROR relative error
+	 * @return distance between two zip codes
+	 */
+	public double getDistanceViaZipCode(String zipcode1, String zipcode2, boolean approximate) {
+		int z1 = slotOf(zipcode1);
+		int z2 = slotOf(zipcode2);
+		if (approximate) {
+			double approx = approximateDistance(z1, z2);
+			if (approx <= APPROXIMATION_RANGE_KM) {
+				return approx;
+			}
 		}
-		br.close();
+		return cachedDistance(z1, z2);
 	}
 
 	/**
+	 * Threshold-only check whether distance between two zip codes is at most
+	 * limitKm. Approximate distance decides it unless it falls within error bound
+	 * of the limit, in which case exact distance is computed.
 	 *
 	 * @param zipcode1 - zip code of previous transaction
 	 * @param zipcode2 - zip code of current transaction
-	 * @return distance between two zip codes
+	 * @param limitKm  - distance limit in km
+	 * @return true if distance between two zip codes is less than or equal to
+	 *         limitKm
 	 */
-	public double getDistanceViaZipCode(String zipcode1, String zipcode2) {
-		ZipCodeData z1 = zipCodesMap.get(zipcode1);
-		ZipCodeData z2 = zipCodesMap.get(zipcode2);
-		return distance(z1.lat, z1.lon, z2.lat, z2.lon);
+	public boolean isDistanceWithin(String zipcode1, String zipcode2, double limitKm) {
+		return checkDistanceWithin(zipcode1, zipcode2, limitKm).isWithin();
+	}
+
+	/**
+	 * Same check as isDistanceWithin, also telling which path decided it. First
+	 * the precomputed reach of both zip codes is compared with limit, then
+	 * approximate distance, and only in the band around the limit where
+	 * approximation can not decide, exact distance is computed.
+	 *
+	 * @param zipcode1 - zip code of previous transaction
+	 * @param zipcode2 - zip code of current transaction
+	 * @param limitKm  - distance limit in km
+	 * @return outcome of check
+	 */
+	public DistanceCheck checkDistanceWithin(String zipcode1, String zipcode2, double limitKm) {
+		int z1 = slotOf(zipcode1);
+		int z2 = slotOf(zipcode2);
+		if (Math.min(zipCodes.reach(z1), zipCodes.reach(z2)) <= limitKm) {
+			return DistanceCheck.WITHIN_REACHABILITY_BOUND;
+		}
+		double approx = approximateDistance(z1, z2);
+		if (approx <= APPROXIMATION_RANGE_KM) {
+			if (approx <= limitKm * (1 - APPROXIMATION_ERROR)) {
+				return DistanceCheck.WITHIN_APPROXIMATE;
+			}
+			if (approx > limitKm * (1 + APPROXIMATION_ERROR)) {
+				return DistanceCheck.BEYOND_APPROXIMATE;
+			}
+		}
+		return (cachedDistance(z1, z2) <= limitKm) ? DistanceCheck.WITHIN_EXACT : DistanceCheck.BEYOND_EXACT;
+	}
+
+	/**
+	 * Upper bound of distance in km between any two zip codes known to this
+	 * utility
+	 */
+	public double getMaxDistanceBound() {
+		return zipCodes.maxReach();
+	}
+
+	/**
+	 * Number of exact distances served from cache
+	 */
+	public long getCacheHits() {
+		return (distanceCache == null) ? 0 : distanceCache.getHits();
 	}
 
-	private double distance(double lat1, double lon1, double lat2, double lon2) {
-		double theta = lon1 - lon2;
-		double dist = Math.sin(deg2rad(lat1)) * Math.sin(deg2rad(lat2))
-				+ Math.cos(deg2rad(lat1)) * Math.cos(deg2rad(lat2)) * Math.cos(deg2rad(theta));
-		dist = Math.acos(dist);
-		dist = rad2deg(dist);
-		dist = dist * 60 * 1.1515;
-		dist = dist * 1.609344;
+	/**
+	 * Number of exact distances which had to be computed
+	 */
+	public long getCacheMisses() {
+		return (distanceCache == null) ? 0 : distanceCache.getMisses();
+	}
 
+	/*
+	 * Exact distance, served from cache when the pair was seen before
+	 */
+	private double cachedDistance(int z1, int z2) {
+		if (distanceCache == null) {
+			return distance(z1, z2);
+		}
+		long key = DistanceCache.key(zipCodes.zipCode(z1), zipCodes.zipCode(z2));
+		double dist = distanceCache.get(key);
+		if (Double.isNaN(dist)) {
+			dist = distance(z1, z2);
+			distanceCache.put(key, dist);
+		}
 		return dist;
 	}
 
-	private double rad2deg(double rad) {
-		return rad * 180.0 / Math.PI;
+	/*
+	 * Slot of zip code in store. Unknown zip code is reported as exception, as
+	 * before a missing map entry failed the distance calculation.
+	 */
+	private int slotOf(String zipCode) {
+		int slot = zipCodes.indexOf(zipCode);
+		if (slot < 0) {
+			throw new IllegalArgumentException("Zip code " + zipCode + " is not present in " + ZIP_CODE_CSV_FILE);
+		}
+		return slot;
+	}
+
+	/*
+	 * Great circle distance with haversine formula, using radians and cosine of
+	 * latitude precomputed by ZipCodeStore. Unlike acos of spherical law of
+	 * cosines, it is numerically stable for close points and returns exactly 0
+	 * for same zip code.
+	 */
+	private double distance(int z1, int z2) {
+		double sinHalfDLat = Math.sin((zipCodes.latitudeRadians(z2) - zipCodes.latitudeRadians(z1)) * 0.5);
+		double sinHalfDLon = Math.sin((zipCodes.longitudeRadians(z2) - zipCodes.longitudeRadians(z1)) * 0.5);
+		double h = sinHalfDLat * sinHalfDLat
+				+ zipCodes.cosLatitude(z1) * zipCodes.cosLatitude(z2) * sinHalfDLon * sinHalfDLon;
+		return 2 * EARTH_RADIUS_KM * Math.asin(Math.sqrt(Math.min(1.0, h)));
 	}
 
-	private double deg2rad(double deg) {
-		return deg * Math.PI / 180.0;
+	/*
+	 * Equirectangular approximation, only multiplications and one square root.
+	 * Error grows with distance, see APPROXIMATION_RANGE_KM.
+	 */
+	private double approximateDistance(int z1, int z2) {
+		double dLon = zipCodes.longitudeRadians(z2) - zipCodes.longitudeRadians(z1);
+		if (dLon > Math.PI) {
+			dLon -= 2 * Math.PI;
+		} else if (dLon < -Math.PI) {
+			dLon += 2 * Math.PI;
+		}
+		double x = dLon * (zipCodes.cosLatitude(z1) + zipCodes.cosLatitude(z2)) * 0.5;
+		double y = zipCodes.latitudeRadians(z2) - zipCodes.latitudeRadians(z1);
+		return EARTH_RADIUS_KM * Math.sqrt(x * x + y * y);
 	}
 
 }
@@ -99,8 +289,8 @@ class DistanceUtility {
 /*
  * //To get the distance between two zipcodes from the main class public class
  * PostcodeCalculator { public static void main(String args[]) throws
- * NumberFormatException, IOException { DistanceUtility disUtil=new
- * DistanceUtility();
+ * NumberFormatException, IOException { DistanceUtility
+ * disUtil=DistanceUtility.getInstance();
  * 
  * System.out.println(disUtil.getDistanceViaZipCode("10001", "10524")); } }
- */
\ No newline at end of file
+ */
@@ -0,0 +1,444 @@
+package com.upgrad.creditcardfrauddetection;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.BindException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/*
+ * FraudMetrics holds per stage latency histograms and counters of fraud
+ * pipeline for this JVM (driver or executor), shared by all task threads.
+ *
+ * Stages : JSON decode, lookup reads (single Get, multi-Get, async Get), speed
+ * check (distance computation), rule evaluation and HBase writes (single Puts
+ * and BufferedMutator flushes of each table). Counters : verdicts, failures of
+ * each rule, batches and records per batch (driver), profile and distance cache
+ * hits / misses.
+ *
+ * Metrics are exposed through JMX (domain com.upgrad.creditcardfrauddetection)
+ * and in Prometheus text format at http://host:port/metrics. Endpoint has no
+ * authentication, so host is fraud.metrics.host (default 127.0.0.1, local
+ * scraper only); -Dfraud.metrics.host=0.0.0.0 serves all interfaces. Port is
+ * fraud.metrics.port (default 9404, -1 disables HTTP and keeps JMX); if it is
+ * taken, as by another executor on same host, next fraud.metrics.port.attempts
+ * ports are tried. With -Dfraud.metrics.enabled=false nothing is recorded or
+ * exposed.
+ */
+final class FraudMetrics implements FraudMetricsMXBean {
+
+	static final boolean ENABLED = !"false".equals(System.getProperty("fraud.metrics.enabled"));
+
+	static final String DEFAULT_HOST = "127.0.0.1";
+	static final int DEFAULT_PORT = 9404;
+	static final int DEFAULT_PORT_ATTEMPTS = 10;
+
+	static final String JMX_DOMAIN = "com.upgrad.creditcardfrauddetection";
+
+	/*
+	 * Timed stages of fraud pipeline
+	 */
+	enum Stage {
+		DECODE, LOOKUP_GET, LOOKUP_MULTI_GET, LOOKUP_ASYNC_GET, SPEED_CHECK, RULES, PUT_TRANSACTION, PUT_LOOKUP,
+		MUTATE_TRANSACTIONS, MUTATE_LOOKUP;
+
+		final String label = name().toLowerCase();
+	}
+
+	private static final FraudMetrics INSTANCE = new FraudMetrics();
+
+	private final StageLatency[] stages = new StageLatency[Stage.values().length];
+
+	private final LongAdder genuine = new LongAdder();
+	private final LongAdder fraud = new LongAdder();
+	private final ConcurrentHashMap<String, LongAdder> ruleEvaluations = new ConcurrentHashMap<String, LongAdder>();
+	private final ConcurrentHashMap<String, LongAdder> ruleFailures = new ConcurrentHashMap<String, LongAdder>();
+	private final LongAdder rulesSkipped = new LongAdder();
+	private final LongAdder batches = new LongAdder();
+	private final LongAdder records = new LongAdder();
+	private volatile long lastBatchRecords = 0L;
+
+	private volatile HttpServer server = null;
+
+	/*
+	 * Latency histogram of one stage, with its JMX view
+	 */
+	private static final class StageLatency implements StageLatencyMXBean {
+
+		final LatencyHistogram histogram = new LatencyHistogram();
+
+		@Override
+		public long getCount() {
+			return histogram.getCount();
+		}
+
+		@Override
+		public double getMeanMicros() {
+			return histogram.getMeanNanos() / 1e3;
+		}
+
+		@Override
+		public double getP50Micros() {
+			return histogram.getPercentileNanos(50) / 1e3;
+		}
+
+		@Override
+		public double getP90Micros() {
+			return histogram.getPercentileNanos(90) / 1e3;
+		}
+
+		@Override
+		public double getP99Micros() {
+			return histogram.getPercentileNanos(99) / 1e3;
+		}
+
+		@Override
+		public double getP999Micros() {
+			return histogram.getPercentileNanos(99.9) / 1e3;
+		}
+
+		@Override
+		public double getMaxMicros() {
+			return histogram.getMaxNanos() / 1e3;
+		}
+	}
+
+	private FraudMetrics() {
+		for (Stage stage : Stage.values()) {
+			stages[stage.ordinal()] = new StageLatency();
+		}
+		if (ENABLED) {
+			registerMBeans();
+
+			/*
+			 * HTTP dispatcher thread takes daemon flag of thread starting server, so it is
+			 * started from a daemon thread and does not keep JVM alive
+			 */
+			Thread starter = new Thread(
+					() -> startHttpServer(System.getProperty("fraud.metrics.host", DEFAULT_HOST),
+							Integer.getInteger("fraud.metrics.port", DEFAULT_PORT),
+							Integer.getInteger("fraud.metrics.port.attempts", DEFAULT_PORT_ATTEMPTS)),
+					"fraud-metrics-start");
+			starter.setDaemon(true);
+			starter.start();
+			try {
+				starter.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	static FraudMetrics getInstance() {
+		return INSTANCE;
+	}
+
+	/*
+	 * Record time of a stage started at startNanos (System.nanoTime)
+	 */
+	static void record(Stage stage, long startNanos) {
+		if (ENABLED) {
+			INSTANCE.stages[stage.ordinal()].histogram.recordSince(startNanos);
+		}
+	}
+
+	/*
+	 * Count verdict of a transaction, rules it was evaluated by or failed and rules
+	 * skipped after a failed rule
+	 */
+	static void recordDecision(FraudRuleEngine.Evaluation evaluation) {
+		if (!ENABLED) {
+			return;
+		}
+		if (evaluation.isGenuine()) {
+			INSTANCE.genuine.increment();
+		} else {
+			INSTANCE.fraud.increment();
+		}
+		for (int i = 0; i < evaluation.size(); i++) {
+			Boolean passed = evaluation.getOutcome(i);
+			if (passed == null) {
+				INSTANCE.rulesSkipped.increment();
+				continue;
+			}
+			String rule = evaluation.getRule(i).getName();
+			counter(INSTANCE.ruleEvaluations, rule).increment();
+			if (!passed) {
+				counter(INSTANCE.ruleFailures, rule).increment();
+			}
+		}
+	}
+
+	private static LongAdder counter(ConcurrentHashMap<String, LongAdder> counters, String rule) {
+		LongAdder counter = counters.get(rule);
+		return (counter != null) ? counter : counters.computeIfAbsent(rule, x -> new LongAdder());
+	}
+
+	private static long count(ConcurrentHashMap<String, LongAdder> counters, String rule) {
+		LongAdder counter = counters.get(rule);
+		return (counter == null) ? 0L : counter.sum();
+	}
+
+	private static long total(ConcurrentHashMap<String, LongAdder> counters) {
+		long total = 0L;
+		for (LongAdder counter : counters.values()) {
+			total += counter.sum();
+		}
+		return total;
+	}
+
+	/*
+	 * Count records of a batch, called on driver once batch is processed
+	 */
+	static void recordBatch(long batchRecords) {
+		if (ENABLED) {
+			INSTANCE.batches.increment();
+			INSTANCE.records.add(batchRecords);
+			INSTANCE.lastBatchRecords = batchRecords;
+		}
+	}
+
+	LatencyHistogram getHistogram(Stage stage) {
+		return stages[stage.ordinal()].histogram;
+	}
+
+	/*
+	 * Register counters and one MXBean per stage with platform MBean server
+	 */
+	private void registerMBeans() {
+		try {
+			MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+			mbeanServer.registerMBean(this, new ObjectName(JMX_DOMAIN + ":type=FraudMetrics"));
+			for (Stage stage : Stage.values()) {
+				mbeanServer.registerMBean(stages[stage.ordinal()],
+						new ObjectName(JMX_DOMAIN + ":type=StageLatency,stage=" + stage.label));
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+
+	/*
+	 * Serve /metrics on host at first free port from port onwards
+	 */
+	private void startHttpServer(String host, int port, int attempts) {
+
+		if (port < 0) {
+			return;
+		}
+		for (int i = 0; i <= Math.max(0, attempts); i++) {
+			try {
+				HttpServer httpServer = HttpServer.create(new InetSocketAddress(host, port + i), 0);
+				httpServer.createContext("/metrics", this::handle);
+				httpServer.setExecutor(Executors.newSingleThreadExecutor(r -> {
+					Thread t = new Thread(r, "fraud-metrics-http");
+					t.setDaemon(true);
+					return t;
+				}));
+				httpServer.start();
+				server = httpServer;
+				System.out.println("\nFraud metrics served at : http://" + httpServer.getAddress().getHostString()
+						+ ":" + httpServer.getAddress().getPort() + "/metrics");
+				return;
+			} catch (BindException e) {
+				continue;
+			} catch (IOException e) {
+				e.printStackTrace();
+				return;
+			}
+		}
+		System.out.println("\nNo free port for fraud metrics from : " + port + " : to : " + (port + attempts));
+	}
+
+	/*
+	 * Port metrics are served on, -1 if they are not served
+	 */
+	int getPort() {
+		HttpServer httpServer = server;
+		return (httpServer == null) ? -1 : httpServer.getAddress().getPort();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		byte[] body = prometheusText().getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+		exchange.sendResponseHeaders(200, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	/*
+	 * All metrics in Prometheus text exposition format. Latencies are summaries
+	 * in seconds.
+	 */
+	String prometheusText() {
+
+		StringBuilder text = new StringBuilder(4096);
+
+		text.append("# HELP fraud_stage_latency_seconds Latency of fraud pipeline stages\n");
+		text.append("# TYPE fraud_stage_latency_seconds summary\n");
+		for (Stage stage : Stage.values()) {
+			LatencyHistogram histogram = getHistogram(stage);
+			for (double quantile : new double[] { 0.5, 0.9, 0.99, 0.999 }) {
+				text.append("fraud_stage_latency_seconds{stage=\"").append(stage.label).append("\",quantile=\"")
+						.append(quantile).append("\"} ").append(histogram.getPercentileNanos(quantile * 100) / 1e9)
+						.append('\n');
+			}
+			text.append("fraud_stage_latency_seconds_sum{stage=\"").append(stage.label).append("\"} ")
+					.append(histogram.getSumNanos() / 1e9).append('\n');
+			text.append("fraud_stage_latency_seconds_count{stage=\"").append(stage.label).append("\"} ")
+					.append(histogram.getCount()).append('\n');
+		}
+
+		text.append("# HELP fraud_verdicts_total Classified transactions by status\n");
+		text.append("# TYPE fraud_verdicts_total counter\n");
+		text.append("fraud_verdicts_total{status=\"GENUINE\"} ").append(getGenuineCount()).append('\n');
+		text.append("fraud_verdicts_total{status=\"FRAUD\"} ").append(getFraudCount()).append('\n');
+
+		text.append("# HELP fraud_rule_evaluations_total Transactions evaluated by each rule\n");
+		text.append("# TYPE fraud_rule_evaluations_total counter\n");
+		for (FraudRule rule : FraudRuleEngine.getInstance().getRules()) {
+			text.append("fraud_rule_evaluations_total{rule=\"").append(rule.getName()).append("\"} ")
+					.append(count(ruleEvaluations, rule.getName())).append('\n');
+		}
+
+		text.append("# HELP fraud_rule_failures_total Transactions failing each rule\n");
+		text.append("# TYPE fraud_rule_failures_total counter\n");
+		for (FraudRule rule : FraudRuleEngine.getInstance().getRules()) {
+			text.append("fraud_rule_failures_total{rule=\"").append(rule.getName()).append("\"} ")
+					.append(count(ruleFailures, rule.getName())).append('\n');
+		}
+
+		counter(text, "fraud_rules_skipped_total", "Rules not evaluated after an earlier rule failed",
+				getRulesSkipped());
+
+		counter(text, "fraud_batches_total", "Batches processed", getBatches());
+		counter(text, "fraud_batch_records_total", "Records of all batches processed", getRecordsProcessed());
+		text.append("# HELP fraud_last_batch_records Records of last batch processed\n");
+		text.append("# TYPE fraud_last_batch_records gauge\n");
+		text.append("fraud_last_batch_records ").append(getLastBatchRecords()).append('\n');
+
+		text.append("# HELP fraud_cache_requests_total Cache lookups by cache and result\n");
+		text.append("# TYPE fraud_cache_requests_total counter\n");
+		text.append("fraud_cache_requests_total{cache=\"profile\",result=\"hit\"} ").append(getProfileCacheHits())
+				.append('\n');
+		text.append("fraud_cache_requests_total{cache=\"profile\",result=\"miss\"} ").append(getProfileCacheMisses())
+				.append('\n');
+		text.append("fraud_cache_requests_total{cache=\"distance\",result=\"hit\"} ").append(getDistanceCacheHits())
+				.append('\n');
+		text.append("fraud_cache_requests_total{cache=\"distance\",result=\"miss\"} ")
+				.append(getDistanceCacheMisses()).append('\n');
+
+		return text.toString();
+	}
+
+	private static void counter(StringBuilder text, String name, String help, long value) {
+		text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		text.append("# TYPE ").append(name).append(" counter\n");
+		text.append(name).append(' ').append(value).append('\n');
+	}
+
+	/*
+	 * One line summary of stage latencies for logging
+	 */
+	String stats() {
+		StringBuilder line = new StringBuilder();
+		for (Stage stage : Stage.values()) {
+			LatencyHistogram histogram = getHistogram(stage);
+			if (histogram.getCount() == 0) {
+				continue;
+			}
+			if (line.length() > 0) {
+				line.append(" : ");
+			}
+			line.append(stage.label).append(" p50 / p99 (us) ")
+					.append(String.format("%.1f / %.1f", histogram.getPercentileNanos(50) / 1e3,
+							histogram.getPercentileNanos(99) / 1e3));
+		}
+		return line.toString();
+	}
+
+	@Override
+	public long getGenuineCount() {
+		return genuine.sum();
+	}
+
+	@Override
+	public long getFraudCount() {
+		return fraud.sum();
+	}
+
+	@Override
+	public long getScoreRuleFailures() {
+		return count(ruleFailures, ScoreRule.NAME);
+	}
+
+	@Override
+	public long getUclRuleFailures() {
+		return count(ruleFailures, UclRule.NAME);
+	}
+
+	@Override
+	public long getSpeedRuleFailures() {
+		return count(ruleFailures, SpeedRule.NAME);
+	}
+
+	@Override
+	public long getRuleEvaluations() {
+		return total(ruleEvaluations);
+	}
+
+	@Override
+	public long getRulesSkipped() {
+		return rulesSkipped.sum();
+	}
+
+	@Override
+	public long getBatches() {
+		return batches.sum();
+	}
+
+	@Override
+	public long getRecordsProcessed() {
+		return records.sum();
+	}
+
+	@Override
+	public long getLastBatchRecords() {
+		return lastBatchRecords;
+	}
+
+	@Override
+	public long getProfileCacheHits() {
+		CardProfileCache cache = CardProfileCache.getLoadedInstance();
+		return (cache == null) ? 0L : cache.getHits();
+	}
+
+	@Override
+	public long getProfileCacheMisses() {
+		CardProfileCache cache = CardProfileCache.getLoadedInstance();
+		return (cache == null) ? 0L : cache.getMisses();
+	}
+
+	@Override
+	public long getDistanceCacheHits() {
+		DistanceUtility distUtil = DistanceUtility.getLoadedInstance();
+		return (distUtil == null) ? 0L : distUtil.getCacheHits();
+	}
+
+	@Override
+	public long getDistanceCacheMisses() {
+		DistanceUtility distUtil = DistanceUtility.getLoadedInstance();
+		return (distUtil == null) ? 0L : distUtil.getCacheMisses();
+	}
+}
@@ -0,0 +1,35 @@
+package com.upgrad.creditcardfrauddetection;
+
+/*
+ * JMX view of counters of fraud pipeline (see FraudMetrics)
+ */
+public interface FraudMetricsMXBean {
+
+	long getGenuineCount();
+
+	long getFraudCount();
+
+	long getScoreRuleFailures();
+
+	long getUclRuleFailures();
+
+	long getSpeedRuleFailures();
+
+	long getRuleEvaluations();
+
+	long getRulesSkipped();
+
+	long getBatches();
+
+	long getRecordsProcessed();
+
+	long getLastBatchRecords();
+
+	long getProfileCacheHits();
+
+	long getProfileCacheMisses();
+
+	long getDistanceCacheHits();
+
+	long getDistanceCacheMisses();
+}
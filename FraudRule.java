@@ -0,0 +1,64 @@
+package com.upgrad.creditcardfrauddetection;
+
+import java.util.Set;
+
+/*
+ * FraudRule is one rule of classification. A transaction is GENUINE only if it
+ * passes every rule. FraudRuleEngine runs rules cheapest first and stops at
+ * first failed rule, so a rule declares the data it reads and its cost.
+ *
+ * Built-in rules are ScoreRule, UclRule and SpeedRule. More rules are added by
+ * listing implementing classes in
+ * META-INF/services/com.upgrad.creditcardfrauddetection.FraudRule of a jar on
+ * classpath (java.util.ServiceLoader), without changing classifier.
+ */
+public interface FraudRule {
+
+	/*
+	 * Data a rule can read, with relative cost of getting it. Transaction fields
+	 * are in hand, profile fields were fetched by one lookup for all rules, and
+	 * zip code distance needs DistanceUtility.
+	 */
+	enum Input {
+		AMOUNT(0), POSTCODE(0), TRANSACTION_DT(0), UCL(1), SCORE(1), LAST_POSTCODE(1), LAST_TRANSACTION_DT(1),
+		ZIP_CODE_DISTANCE(100);
+
+		final int cost;
+
+		Input(int cost) {
+			this.cost = cost;
+		}
+	}
+
+	/*
+	 * Short name of rule, used as rule label of metrics and decision record
+	 */
+	String getName();
+
+	/*
+	 * Description of rule printed at verbose level of DecisionLog
+	 */
+	String getDescription();
+
+	/*
+	 * Data read by this rule
+	 */
+	Set<Input> getInputs();
+
+	/*
+	 * Relative cost of evaluating this rule, sum of cost of its inputs unless
+	 * overridden
+	 */
+	default int getCost() {
+		int cost = 0;
+		for (Input input : getInputs()) {
+			cost += input.cost;
+		}
+		return cost;
+	}
+
+	/*
+	 * true if transaction passes this rule against lookup profile of its card
+	 */
+	boolean evaluate(CreditCardFraudDetection transaction, CardLookupProfile profile);
+}
@@ -0,0 +1,167 @@
+package com.upgrad.creditcardfrauddetection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.Set;
+
+/*
+ * FraudRuleEngine runs FraudRules of this JVM against a transaction. Rules are
+ * the built-in ones (ScoreRule, UclRule, SpeedRule) followed by those found by
+ * ServiceLoader, ordered by declared cost (equal cost keeps that order), so
+ * rules on lookup profile run before zip code distance is checked.
+ *
+ * One failed rule already makes transaction FRAUD, so evaluation stops at first
+ * failed rule and later rules are not evaluated. A low score or amount over UCL
+ * no longer pays for distance check.
+ *
+ * fraud.rules.explain=true evaluates every rule, so decision record of a FRAUD
+ * transaction tells all rules it failed, for audit.
+ */
+final class FraudRuleEngine {
+
+	static final boolean EXPLAIN = Boolean.getBoolean("fraud.rules.explain");
+
+	private static volatile FraudRuleEngine instance = null;
+
+	private final FraudRule[] rules;
+	private final boolean explain;
+
+	/*
+	 * Outcome of rules for one transaction, by position of rule in engine order
+	 */
+	static final class Evaluation {
+
+		private static final byte NOT_EVALUATED = 0;
+		private static final byte PASSED = 1;
+		private static final byte FAILED = 2;
+
+		private final FraudRule[] rules;
+		private final byte[] outcomes;
+		private boolean genuine = true;
+
+		private Evaluation(FraudRule[] rules) {
+			this.rules = rules;
+			this.outcomes = new byte[rules.length];
+		}
+
+		/*
+		 * true if every rule passed
+		 */
+		boolean isGenuine() {
+			return genuine;
+		}
+
+		int size() {
+			return rules.length;
+		}
+
+		FraudRule getRule(int index) {
+			return rules[index];
+		}
+
+		boolean isEvaluated(int index) {
+			return outcomes[index] != NOT_EVALUATED;
+		}
+
+		/*
+		 * true if rule passed, false if it failed, null if it was not evaluated
+		 */
+		Boolean getOutcome(int index) {
+			return (outcomes[index] == NOT_EVALUATED) ? null : outcomes[index] == PASSED;
+		}
+	}
+
+	FraudRuleEngine(List<FraudRule> rules, boolean explain) {
+		List<FraudRule> ordered = new ArrayList<FraudRule>(rules);
+		Collections.sort(ordered, Comparator.comparingInt(FraudRule::getCost));
+		this.rules = ordered.toArray(new FraudRule[0]);
+		this.explain = explain;
+	}
+
+	/*
+	 * Engine of this JVM, with rules loaded on first use
+	 */
+	static FraudRuleEngine getInstance() {
+
+		FraudRuleEngine engine = instance;
+		if (engine == null) {
+			synchronized (FraudRuleEngine.class) {
+				engine = instance;
+				if (engine == null) {
+					engine = new FraudRuleEngine(loadRules(), EXPLAIN);
+					instance = engine;
+				}
+			}
+		}
+		return engine;
+	}
+
+	/*
+	 * Built-in rules and rules registered through ServiceLoader. A rule with the
+	 * same name as an earlier one is ignored.
+	 */
+	private static List<FraudRule> loadRules() {
+
+		List<FraudRule> rules = new ArrayList<FraudRule>();
+		rules.add(new ScoreRule());
+		rules.add(new UclRule());
+		rules.add(new SpeedRule());
+
+		Set<String> names = new HashSet<String>();
+		for (FraudRule rule : rules) {
+			names.add(rule.getName());
+		}
+
+		try {
+			for (FraudRule rule : ServiceLoader.load(FraudRule.class)) {
+				if (names.add(rule.getName())) {
+					rules.add(rule);
+				} else {
+					System.out.println("\nIgnoring rule " + rule.getClass().getName() + " : rule named "
+							+ rule.getName() + " is already loaded");
+				}
+			}
+		} catch (ServiceConfigurationError e) {
+			e.printStackTrace();
+		}
+		return rules;
+	}
+
+	/*
+	 * Rules in evaluation order
+	 */
+	List<FraudRule> getRules() {
+		return Collections.unmodifiableList(Arrays.asList(rules));
+	}
+
+	boolean isExplain() {
+		return explain;
+	}
+
+	/*
+	 * Evaluate rules cheapest first against lookup profile of transaction card,
+	 * stopping at first failed rule unless in explain mode
+	 */
+	Evaluation evaluate(CreditCardFraudDetection transaction, CardLookupProfile profile) {
+
+		Evaluation evaluation = new Evaluation(rules);
+		for (int i = 0; i < rules.length; i++) {
+			if (rules[i].evaluate(transaction, profile)) {
+				evaluation.outcomes[i] = Evaluation.PASSED;
+			} else {
+				evaluation.outcomes[i] = Evaluation.FAILED;
+				evaluation.genuine = false;
+				if (!explain) {
+					break;
+				}
+			}
+		}
+		return evaluation;
+	}
+}
@@ -0,0 +1,67 @@
+package com.upgrad.creditcardfrauddetection;
+
+/*
+ * FraudStores holds LookupStore and TransactionSink used by this JVM. They are
+ * selected on first use by fraud.store :
+ *
+ * hbase : lookup_data_hive and card_transactions_hive tables (default)
+ *
+ * memory : InMemoryFraudStore, for load tests without HBase cluster
+ *
+ * install replaces them, e.g. by LoadHarness before streaming starts.
+ */
+final class FraudStores {
+
+	static final String STORE_HBASE = "hbase";
+	static final String STORE_MEMORY = "memory";
+
+	private static volatile LookupStore lookupStore = null;
+	private static volatile TransactionSink transactionSink = null;
+
+	private FraudStores() {
+	}
+
+	static LookupStore getLookupStore() {
+		if (lookupStore == null) {
+			init();
+		}
+		return lookupStore;
+	}
+
+	static TransactionSink getTransactionSink() {
+		if (transactionSink == null) {
+			init();
+		}
+		return transactionSink;
+	}
+
+	/*
+	 * true if lookup profiles are read from HBase, which async mode needs as it
+	 * calls HBase directly
+	 */
+	static boolean isHBase() {
+		return getLookupStore() instanceof HBaseLookupStore;
+	}
+
+	static synchronized void install(LookupStore lookup, TransactionSink sink) {
+		lookupStore = lookup;
+		transactionSink = sink;
+	}
+
+	private static synchronized void init() {
+		if (lookupStore != null && transactionSink != null) {
+			return;
+		}
+		String store = System.getProperty("fraud.store", STORE_HBASE);
+		if (store.equals(STORE_MEMORY)) {
+			InMemoryFraudStore memory = InMemoryFraudStore.getInstance();
+			lookupStore = memory;
+			transactionSink = memory;
+		} else if (store.equals(STORE_HBASE)) {
+			lookupStore = new HBaseLookupStore();
+			transactionSink = new HBaseTransactionSink();
+		} else {
+			throw new IllegalArgumentException("Unknown fraud.store : " + store);
+		}
+	}
+}
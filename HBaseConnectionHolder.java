@@ -0,0 +1,185 @@
+package com.upgrad.creditcardfrauddetection;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Admin;
+import org.apache.hadoop.hbase.client.AsyncConnection;
+import org.apache.hadoop.hbase.client.BufferedMutator;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.ConnectionFactory;
+import org.apache.hadoop.hbase.client.Table;
+
+/*
+ * HBaseConnectionHolder keeps one HBase Connection per JVM (driver or
+ * executor). Connection is heavyweight (ZooKeeper session, meta cache, RPC
+ * clients) and thread-safe, so it is created once at first use and shared by
+ * all task threads. Table and BufferedMutator handed out from it are cheap and
+ * must be closed by caller after use. Connection is closed on JVM shutdown.
+ *
+ * An AsyncConnection, used by non-blocking classification path
+ * (AsyncFraudDetection), is likewise created once at first use and shared.
+ */
+final class HBaseConnectionHolder {
+
+	private static volatile Connection connection = null;
+
+	private static volatile AsyncConnection asyncConnection = null;
+
+	/*
+	 * Tables already found to exist, so tableExists call to HBase master is made
+	 * only once per table per JVM
+	 */
+	private static final Set<TableName> existingTables = ConcurrentHashMap.newKeySet();
+
+	/*
+	 * One shutdown hook per JVM closes whichever connections are open at exit,
+	 * however often they were closed and created again
+	 */
+	static {
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> close(), "hbase-connection-shutdown"));
+	}
+
+	private HBaseConnectionHolder() {
+	}
+
+	/*
+	 * getConnection method returns shared connection, creating it on first call.
+	 * hostServerIP is initialized by main method of KafkaConsumer class (and
+	 * inside Spark tasks for executors).
+	 */
+	static Connection getConnection() throws IOException {
+
+		Connection con = connection;
+		if (con == null) {
+			synchronized (HBaseConnectionHolder.class) {
+				con = connection;
+				if (con == null) {
+					con = ConnectionFactory.createConnection(createConfiguration());
+					connection = con;
+				}
+			}
+		}
+		return con;
+	}
+
+	/*
+	 * getAsyncConnection method returns shared asynchronous connection, creating
+	 * it on first call. Tables handed out from it need not be closed.
+	 */
+	static AsyncConnection getAsyncConnection() throws IOException {
+
+		AsyncConnection con = asyncConnection;
+		if (con == null) {
+			synchronized (HBaseConnectionHolder.class) {
+				con = asyncConnection;
+				if (con == null) {
+					try {
+						con = ConnectionFactory.createAsyncConnection(createConfiguration()).get();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new IOException("Interrupted while creating HBase async connection", e);
+					} catch (ExecutionException e) {
+						throw new IOException("HBase async connection could not be created", e.getCause());
+					}
+					asyncConnection = con;
+				}
+			}
+		}
+		return con;
+	}
+
+	/*
+	 * HBase configuration, same settings as were used for every connection before
+	 */
+	private static Configuration createConfiguration() {
+
+		String hostServerIP = CreditCardFraudDetection.hostServerIP;
+		if (hostServerIP == null) {
+			throw new IllegalStateException("Host server IP is not set, HBase connection can not be created");
+		}
+
+		Configuration conf = HBaseConfiguration.create();
+		conf.setInt("timeout", 120000);
+		conf.set("hbase.master", hostServerIP + ":60000");
+		conf.set("hbase.zookeeper.quorum", hostServerIP);
+		conf.set("hbase.zookeeper.property.clientPort", "2181");
+		conf.set("zookeeper.znode.parent", "/hbase");
+		return conf;
+	}
+
+	/*
+	 * getTable method returns lightweight Table from shared connection. Caller
+	 * closes it.
+	 */
+	static Table getTable(TableName tableName) throws IOException {
+		return getConnection().getTable(tableName);
+	}
+
+	/*
+	 * getBufferedMutator method returns BufferedMutator from shared connection.
+	 * Caller closes it, which also flushes pending mutations.
+	 */
+	static BufferedMutator getBufferedMutator(TableName tableName) throws IOException {
+		return getConnection().getBufferedMutator(tableName);
+	}
+
+	/*
+	 * getAdmin method returns Admin from shared connection. Admin is not
+	 * thread-safe, so caller closes it after use.
+	 */
+	static Admin getAdmin() throws IOException {
+		return getConnection().getAdmin();
+	}
+
+	/*
+	 * tableExists method checks table existence with HBase master only until
+	 * table is found once
+	 */
+	static boolean tableExists(TableName tableName) throws IOException {
+
+		if (existingTables.contains(tableName)) {
+			return true;
+		}
+		try (Admin admin = getAdmin()) {
+			if (admin.tableExists(tableName)) {
+				existingTables.add(tableName);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/*
+	 * close method closes shared connections if they were created. A later
+	 * getConnection or getAsyncConnection call creates a new one.
+	 */
+	static synchronized void close() {
+
+		Connection con = connection;
+		connection = null;
+		existingTables.clear();
+		if (con != null && !con.isClosed()) {
+			try {
+				con.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+
+		AsyncConnection asyncCon = asyncConnection;
+		asyncConnection = null;
+		if (asyncCon != null) {
+			try {
+				asyncCon.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+}
@@ -0,0 +1,129 @@
+package com.upgrad.creditcardfrauddetection;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/*
+ * HBaseLookupStore reads lookup profiles from lookup_data_hive HBase table
+ * through connection shared by this JVM (HBaseConnectionHolder). Profiles are
+ * kept in CardProfileCache, so repeat swipes of a card are served without
+ * HBase read.
+ */
+final class HBaseLookupStore implements LookupStore {
+
+	/*
+	 * Both lookup_card_family and lookup_transaction_family columns are fetched by
+	 * a single Get, so one round trip to HBase is made per card
+	 */
+	@Override
+	public CardLookupProfile getProfile(String cardID) throws IOException {
+
+		CardProfileCache cache = CardProfileCache.getInstance();
+		if (cache != null) {
+			CardLookupProfile cached = cache.get(cardID);
+			if (cached != null) {
+				return cached;
+			}
+		}
+
+		long generation = (cache != null) ? cache.generation(cardID) : 0L;
+		try (Table htable = HBaseConnectionHolder.getTable(HBaseSchema.LOOKUP_TABLE)) {
+			Get cardId = lookupGet(cardID);
+			long start = System.nanoTime();
+			Result result = htable.get(cardId);
+			FraudMetrics.record(FraudMetrics.Stage.LOOKUP_GET, start);
+			CardLookupProfile profile = CardLookupProfile.fromResult(cardID, result);
+			if (cache != null) {
+				cache.put(profile, generation);
+			}
+			return profile;
+
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+
+		return CardLookupProfile.empty(cardID);
+	}
+
+	/*
+	 * Rows of all cards not found in CardProfileCache are fetched through one
+	 * multi-Get
+	 */
+	@Override
+	public Map<String, CardLookupProfile> getProfiles(Collection<String> cardIDs) throws IOException {
+
+		Map<String, CardLookupProfile> profiles = new HashMap<String, CardLookupProfile>();
+		CardProfileCache cache = CardProfileCache.getInstance();
+
+		List<String> keys = new ArrayList<String>(cardIDs.size());
+		for (String cardID : cardIDs) {
+			CardLookupProfile cached = (cache != null) ? cache.get(cardID) : null;
+			if (cached != null) {
+				profiles.put(cardID, cached);
+			} else {
+				keys.add(cardID);
+			}
+		}
+
+		if (keys.isEmpty()) {
+			return profiles;
+		}
+
+		List<Get> gets = new ArrayList<Get>(keys.size());
+		long[] generations = new long[keys.size()];
+		for (int i = 0; i < generations.length; i++) {
+			String cardID = keys.get(i);
+			gets.add(lookupGet(cardID));
+			generations[i] = (cache != null) ? cache.generation(cardID) : 0L;
+		}
+
+		Result[] results;
+		long start = System.nanoTime();
+		try (Table htable = HBaseConnectionHolder.getTable(HBaseSchema.LOOKUP_TABLE)) {
+			results = htable.get(gets);
+		}
+		FraudMetrics.record(FraudMetrics.Stage.LOOKUP_MULTI_GET, start);
+
+		/*
+		 * Results are returned in same order as Gets
+		 */
+		for (int i = 0; i < results.length; i++) {
+			String cardID = keys.get(i);
+			try {
+				CardLookupProfile profile = CardLookupProfile.fromResult(cardID, results[i]);
+				profiles.put(cardID, profile);
+				if (cache != null) {
+					cache.put(profile, generations[i]);
+				}
+			} catch (Exception e) {
+				e.printStackTrace();
+				profiles.put(cardID, CardLookupProfile.empty(cardID));
+			}
+		}
+
+		return profiles;
+	}
+
+	/*
+	 * lookupGet method prepares Get for lookup_data_hive row of input Card ID
+	 * covering all columns of lookup_card_family and lookup_transaction_family
+	 * needed for classification. It is also used by AsyncFraudDetection.
+	 */
+	static Get lookupGet(String cardID) {
+		Get cardId = new Get(Bytes.toBytes(cardID));
+		cardId.addColumn(HBaseSchema.LOOKUP_CARD_FAMILY, HBaseSchema.UCL);
+		cardId.addColumn(HBaseSchema.LOOKUP_CARD_FAMILY, HBaseSchema.SCORE);
+		cardId.addColumn(HBaseSchema.LOOKUP_TRANSACTION_FAMILY, HBaseSchema.POSTCODE);
+		cardId.addColumn(HBaseSchema.LOOKUP_TRANSACTION_FAMILY, HBaseSchema.TRANSACTION_DT);
+		return cardId;
+	}
+}
@@ -0,0 +1,49 @@
+package com.upgrad.creditcardfrauddetection;
+
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/*
+ * HBaseSchema holds table, column family and column names of the HBase tables
+ * used by the streaming application. These tables are created through the
+ * hive-hbase integration (see LoadCreateNoSQL.txt) so names here must match
+ * the hbase.columns.mapping used there.
+ */
+final class HBaseSchema {
+
+	/*
+	 * lookup_data_hive table and its column families / columns
+	 */
+	static final TableName LOOKUP_TABLE = TableName.valueOf("lookup_data_hive");
+	static final byte[] LOOKUP_CARD_FAMILY = Bytes.toBytes("lookup_card_family");
+	static final byte[] LOOKUP_TRANSACTION_FAMILY = Bytes.toBytes("lookup_transaction_family");
+	static final byte[] UCL = Bytes.toBytes("ucl");
+	static final byte[] SCORE = Bytes.toBytes("score");
+	static final byte[] POSTCODE = Bytes.toBytes("postcode");
+	static final byte[] TRANSACTION_DT = Bytes.toBytes("transaction_dt");
+
+	/*
+	 * card_transactions_hive table and its column family / columns
+	 */
+	static final TableName TRANSACTIONS_TABLE = TableName.valueOf("card_transactions_hive");
+	static final byte[] TRANSACTIONS_FAMILY = Bytes.toBytes("card_transactions_family");
+	static final byte[] CARD_ID = Bytes.toBytes("card_id");
+	static final byte[] MEMBER_ID = Bytes.toBytes("member_id");
+	static final byte[] AMOUNT = Bytes.toBytes("amount");
+	static final byte[] POS_ID = Bytes.toBytes("pos_id");
+	static final byte[] STATUS = Bytes.toBytes("status");
+
+	/*
+	 * lookup_refresh_marker table, holding time of last lookup table refresh (see
+	 * LookupRefreshMarker)
+	 */
+	static final TableName REFRESH_MARKER_TABLE = TableName.valueOf("lookup_refresh_marker");
+	static final byte[] REFRESH_MARKER_FAMILY = Bytes.toBytes("marker_family");
+	static final byte[] REFRESH_MARKER_ROW = Bytes.toBytes("lookup_data_hive");
+	static final byte[] REFRESHED_AT = Bytes.toBytes("refreshed_at");
+	static final byte[] INCREMENTAL_WATERMARK = Bytes.toBytes("incremental_watermark");
+	static final byte[] MEMBER_SCORE_CHECKSUM = Bytes.toBytes("member_score_checksum");
+
+	private HBaseSchema() {
+	}
+}
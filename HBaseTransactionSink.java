@@ -0,0 +1,227 @@
+package com.upgrad.creditcardfrauddetection;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.BufferedMutator;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/*
+ * HBaseTransactionSink writes classified transactions to card_transactions_hive
+ * and postcode and transaction date of GENUINE ones to lookup_data_hive,
+ * through connection shared by this JVM (HBaseConnectionHolder). Lookup
+ * updates are written through to CardProfileCache.
+ */
+final class HBaseTransactionSink implements TransactionSink {
+
+	/*
+	 * One Put per table, sent as soon as transaction is classified
+	 */
+	@Override
+	public void write(CreditCardFraudDetection transactionData) throws IOException {
+
+		try {
+
+			String transactionTable = HBaseSchema.TRANSACTIONS_TABLE.getNameAsString();
+
+			/*
+			 * Check if table exists
+			 */
+			if (HBaseConnectionHolder.tableExists(HBaseSchema.TRANSACTIONS_TABLE)) {
+
+				Put p = transactionPut(transactionData);
+
+				long start = System.nanoTime();
+				try (Table htable = HBaseConnectionHolder.getTable(HBaseSchema.TRANSACTIONS_TABLE)) {
+					htable.put(p);
+				}
+				FraudMetrics.record(FraudMetrics.Stage.PUT_TRANSACTION, start);
+				if (DecisionLog.VERBOSE) {
+					System.out.println("\nCurrent Transaction Details are populated in Card Transactions HBase Table : "
+							+ transactionTable);
+				}
+			} else {
+				System.out.println("\nHBase Table named : " + transactionTable + " : does not exist");
+			}
+
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+
+		/*
+		 * Check if status is Genuine to update lookup_data_hive HBase table
+		 */
+		if (transactionData.getStatus().equals("GENUINE")) {
+
+			if (DecisionLog.VERBOSE) {
+				System.out.println("\nCurrent Card Transaction status is GENUINE so updating lookup table");
+			}
+
+			try {
+
+				String lookupTable = HBaseSchema.LOOKUP_TABLE.getNameAsString();
+
+				/*
+				 * Check if table exists
+				 */
+				if (HBaseConnectionHolder.tableExists(HBaseSchema.LOOKUP_TABLE)) {
+					Put p = lookupPut(transactionData);
+
+					/*
+					 * Save put instance to HTable.
+					 */
+					long start = System.nanoTime();
+					try (Table htable = HBaseConnectionHolder.getTable(HBaseSchema.LOOKUP_TABLE)) {
+						htable.put(p);
+					}
+					FraudMetrics.record(FraudMetrics.Stage.PUT_LOOKUP, start);
+
+					/*
+					 * Write-through to cached profile of this card
+					 */
+					CardProfileCache cache = CardProfileCache.getInstance();
+					if (cache != null) {
+						cache.updateLastTransaction(transactionData.getCard_id(), transactionData.getPostcode(),
+								transactionData.getTransactionMillis());
+					}
+					if (DecisionLog.VERBOSE) {
+						System.out.println(
+								"\nPostcode and Transaction Date updated for Card ID of current transaction in lookup HBase table : "
+										+ lookupTable);
+					}
+
+				} else {
+					System.out.println("\nHBase Lookup Table named : " + lookupTable + " : does not exist");
+				}
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+		} else if (DecisionLog.VERBOSE) {
+			System.out.println("\nCurrent Card Transaction status is FRAUD so not updating lookup table");
+		}
+	}
+
+	/*
+	 * card_transactions_hive Puts of all transactions and lookup_data_hive Puts of
+	 * GENUINE ones are flushed through BufferedMutator, in order of transactions.
+	 * A transaction whose Puts can not be built (missing field of a bad record)
+	 * is skipped, same as single write, so it does not fail other transactions.
+	 */
+	@Override
+	public void writeAll(List<CreditCardFraudDetection> transactions) throws IOException {
+
+		List<Put> transactionPuts = new ArrayList<Put>(transactions.size());
+		List<Put> lookupPuts = new ArrayList<Put>();
+		List<CreditCardFraudDetection> genuineTransactions = new ArrayList<CreditCardFraudDetection>();
+
+		for (CreditCardFraudDetection transaction : transactions) {
+			try {
+				Put transactionPut = transactionPut(transaction);
+				Put lookupPut = "GENUINE".equals(transaction.getStatus()) ? lookupPut(transaction) : null;
+				transactionPuts.add(transactionPut);
+				if (lookupPut != null) {
+					lookupPuts.add(lookupPut);
+					genuineTransactions.add(transaction);
+				}
+			} catch (RuntimeException e) {
+				System.out.println("\nSkipping transaction which can not be stored : Card ID : "
+						+ transaction.getCard_id());
+				e.printStackTrace();
+			}
+		}
+
+		/*
+		 * Flush all Puts through BufferedMutator
+		 */
+		mutate(HBaseSchema.TRANSACTIONS_TABLE, transactionPuts, FraudMetrics.Stage.MUTATE_TRANSACTIONS);
+		mutate(HBaseSchema.LOOKUP_TABLE, lookupPuts, FraudMetrics.Stage.MUTATE_LOOKUP);
+
+		/*
+		 * Write-through of flushed lookup updates to cached profiles, in order of
+		 * transactions
+		 */
+		CardProfileCache cache = CardProfileCache.getInstance();
+		if (cache != null) {
+			for (CreditCardFraudDetection transaction : genuineTransactions) {
+				cache.updateLastTransaction(transaction.getCard_id(), transaction.getPostcode(),
+						transaction.getTransactionMillis());
+			}
+		}
+	}
+
+	/*
+	 * mutate method sends all Puts to input table through a BufferedMutator,
+	 * which groups them into as few RPCs as its write buffer allows. Closing the
+	 * mutator flushes whatever is still buffered. Time until flushed is recorded
+	 * for given stage.
+	 */
+	private static void mutate(TableName tableName, List<Put> puts, FraudMetrics.Stage stage) throws IOException {
+
+		if (puts.isEmpty()) {
+			return;
+		}
+
+		/*
+		 * Check if table exists
+		 */
+		if (!HBaseConnectionHolder.tableExists(tableName)) {
+			System.out.println("\nHBase Table named : " + tableName + " : does not exist");
+			return;
+		}
+
+		long start = System.nanoTime();
+		try (BufferedMutator mutator = HBaseConnectionHolder.getBufferedMutator(tableName)) {
+			mutator.mutate(puts);
+		}
+		FraudMetrics.record(stage, start);
+	}
+
+	/*
+	 * transactionPut method prepares Put of a classified transaction for
+	 * card_transactions_hive HBASE table, using salted card_id and time row key of
+	 * TransactionRowKey. It is also used by AsyncFraudDetection.
+	 */
+	static Put transactionPut(CreditCardFraudDetection transaction) {
+
+		Put p = new Put(TransactionRowKey.newKey(transaction.getCard_id(), transaction.getTransactionMillis()));
+
+		/*
+		 * Add column values for each column
+		 */
+		p.addColumn(HBaseSchema.TRANSACTIONS_FAMILY, HBaseSchema.CARD_ID, Bytes.toBytes(transaction.getCard_id()));
+		p.addColumn(HBaseSchema.TRANSACTIONS_FAMILY, HBaseSchema.MEMBER_ID, Bytes.toBytes(transaction.getMember_id()));
+		p.addColumn(HBaseSchema.TRANSACTIONS_FAMILY, HBaseSchema.AMOUNT,
+				CellCodec.encodeDouble(transaction.getAmount()));
+		p.addColumn(HBaseSchema.TRANSACTIONS_FAMILY, HBaseSchema.POSTCODE, Bytes.toBytes(transaction.getPostcode()));
+		p.addColumn(HBaseSchema.TRANSACTIONS_FAMILY, HBaseSchema.POS_ID, Bytes.toBytes(transaction.getPos_id()));
+		p.addColumn(HBaseSchema.TRANSACTIONS_FAMILY, HBaseSchema.TRANSACTION_DT,
+				TransactionTime.toCell(transaction.getTransactionMillis()));
+		p.addColumn(HBaseSchema.TRANSACTIONS_FAMILY, HBaseSchema.STATUS, Bytes.toBytes(transaction.getStatus()));
+
+		return p;
+	}
+
+	/*
+	 * lookupPut method prepares Put for Card ID row key in lookup_data_hive HBASE
+	 * table with postcode and transaction_dt of a GENUINE transaction. It is also
+	 * used by AsyncFraudDetection.
+	 */
+	static Put lookupPut(CreditCardFraudDetection transaction) {
+
+		Put p = new Put(Bytes.toBytes(transaction.getCard_id()));
+
+		/*
+		 * Add column values for postcode and transaction_dt
+		 */
+		p.addColumn(HBaseSchema.LOOKUP_TRANSACTION_FAMILY, HBaseSchema.POSTCODE,
+				Bytes.toBytes(transaction.getPostcode()));
+		p.addColumn(HBaseSchema.LOOKUP_TRANSACTION_FAMILY, HBaseSchema.TRANSACTION_DT,
+				TransactionTime.toCell(transaction.getTransactionMillis()));
+
+		return p;
+	}
+}
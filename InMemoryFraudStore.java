@@ -0,0 +1,152 @@
+package com.upgrad.creditcardfrauddetection;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * InMemoryFraudStore is LookupStore and TransactionSink in memory of this JVM,
+ * selected by fraud.store=memory, so rule path can be run and load tested
+ * without HBase cluster.
+ *
+ * Lookup profiles are kept in a ConcurrentHashMap, seeded by load. A GENUINE
+ * transaction replaces last postcode and transaction date of its card
+ * atomically, same update as lookup_data_hive gets. Written transactions are
+ * counted and most recent fraud.memory.recent (default 65536, 0 keeps none)
+ * are kept in a ring, so memory stays bounded however long a load test runs.
+ * Reads and writes take no lock shared by all cards.
+ */
+final class InMemoryFraudStore implements LookupStore, TransactionSink {
+
+	static final int DEFAULT_RECENT = 1 << 16;
+
+	private static volatile InMemoryFraudStore instance = null;
+
+	private final ConcurrentHashMap<String, CardLookupProfile> profiles = new ConcurrentHashMap<String, CardLookupProfile>(
+			1 << 16);
+
+	private final int recentMask;
+	private final AtomicReferenceArray<CreditCardFraudDetection> recent;
+	private final AtomicLong written = new AtomicLong();
+
+	private final LongAdder lookupReads = new LongAdder();
+	private final LongAdder lookupMisses = new LongAdder();
+	private final LongAdder lookupUpdates = new LongAdder();
+	private final LongAdder frauds = new LongAdder();
+
+	InMemoryFraudStore(int recentCapacity) {
+		int size = (recentCapacity > 0) ? Integer.highestOneBit(Math.max(2, recentCapacity - 1)) << 1 : 0;
+		this.recentMask = size - 1;
+		this.recent = (size > 0) ? new AtomicReferenceArray<CreditCardFraudDetection>(size) : null;
+	}
+
+	/*
+	 * Store shared by this JVM
+	 */
+	static InMemoryFraudStore getInstance() {
+		InMemoryFraudStore store = instance;
+		if (store == null) {
+			synchronized (InMemoryFraudStore.class) {
+				store = instance;
+				if (store == null) {
+					store = new InMemoryFraudStore(Integer.getInteger("fraud.memory.recent", DEFAULT_RECENT));
+					instance = store;
+				}
+			}
+		}
+		return store;
+	}
+
+	/*
+	 * Seed lookup profiles, replacing those of same cards
+	 */
+	void load(Collection<CardLookupProfile> seed) {
+		for (CardLookupProfile profile : seed) {
+			profiles.put(profile.getCard_id(), profile);
+		}
+	}
+
+	@Override
+	public CardLookupProfile getProfile(String cardID) {
+		lookupReads.increment();
+		CardLookupProfile profile = profiles.get(cardID);
+		if (profile == null) {
+			lookupMisses.increment();
+			return CardLookupProfile.empty(cardID);
+		}
+		return profile;
+	}
+
+	@Override
+	public Map<String, CardLookupProfile> getProfiles(Collection<String> cardIDs) {
+		Map<String, CardLookupProfile> result = new HashMap<String, CardLookupProfile>();
+		for (String cardID : cardIDs) {
+			result.put(cardID, getProfile(cardID));
+		}
+		return result;
+	}
+
+	@Override
+	public void write(CreditCardFraudDetection transaction) {
+
+		long position = written.getAndIncrement();
+		if (recent != null) {
+			recent.lazySet((int) position & recentMask, transaction);
+		}
+
+		if (transaction.getStatus().equals("GENUINE")) {
+			final String postcode = transaction.getPostcode();
+			final long transactionMillis = transaction.getTransactionMillis();
+			profiles.compute(transaction.getCard_id(),
+					(cardID, profile) -> ((profile == null) ? CardLookupProfile.empty(cardID) : profile)
+							.withLastTransaction(postcode, transactionMillis));
+			lookupUpdates.increment();
+		} else {
+			frauds.increment();
+		}
+	}
+
+	@Override
+	public void writeAll(List<CreditCardFraudDetection> transactions) {
+		for (CreditCardFraudDetection transaction : transactions) {
+			write(transaction);
+		}
+	}
+
+	long getWritten() {
+		return written.get();
+	}
+
+	/*
+	 * Most recent written transactions kept in ring, oldest first
+	 */
+	List<CreditCardFraudDetection> getRecentTransactions() {
+		List<CreditCardFraudDetection> transactions = new ArrayList<CreditCardFraudDetection>();
+		if (recent == null) {
+			return transactions;
+		}
+		long end = written.get();
+		for (long position = Math.max(0L, end - recent.length()); position < end; position++) {
+			CreditCardFraudDetection transaction = recent.get((int) position & recentMask);
+			if (transaction != null) {
+				transactions.add(transaction);
+			}
+		}
+		return transactions;
+	}
+
+	/*
+	 * One line summary of store counters for logging
+	 */
+	String stats() {
+		return "Profiles : " + profiles.size() + " : Lookup Reads : " + lookupReads.sum() + " : Lookup Misses : "
+				+ lookupMisses.sum() + " : Transactions Written : " + written.get() + " : Lookup Updates : "
+				+ lookupUpdates.sum() + " : Fraud : " + frauds.sum();
+	}
+}
@@ -0,0 +1,463 @@
+package com.upgrad.creditcardfrauddetection;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileChecksum;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.CompareOperator;
+import org.apache.hadoop.hbase.client.BufferedMutator;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.filter.SingleColumnValueFilter;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/*
+ * IncrementalLookupRefresh updates lookup_data_hive for changed cards only,
+ * instead of lookupDataRefresh.hql re-ranking full history of every card:
+ *
+ * 1. Cards with GENUINE transactions written to card_transactions_hive since
+ * last watermark are found by a time range scan on cell timestamps, which
+ * skips store files holding older cells only.
+ *
+ * 2. For each such card, last 10 GENUINE transactions are read by a prefix
+ * scan of salted row keys (TransactionRowKey, so TransactionRowKeyMigration
+ * must have been run on Hive loaded rows), and UCL (average + 3 x population
+ * standard deviation, same as STDDEV of Hive), postcode and transaction_dt
+ * of newest one are upserted. Member of card is taken from newest one too.
+ *
+ * 3. member_score is imported in full by Sqoop on every run, so its HDFS
+ * directory changes even when no score did. Scores are compared only if
+ * checksum of import differs from the one last applied, against a snapshot of
+ * that import (fraud.refresh.score.snapshot.dir), and only rows of card_member
+ * whose member score changed are kept to upsert score of their cards. Cards of
+ * step 2 get score of their member if it changed or if their lookup row has
+ * no score yet.
+ *
+ * Watermark is kept in lookup_refresh_marker table. It trails run time by
+ * fraud.refresh.watermark.lag.seconds (default 60), so transactions still
+ * being written when run starts are picked by next run. First run (no
+ * watermark) refreshes every card. If any card was updated, LookupRefreshMarker
+ * is bumped so streaming application drops its cached profiles.
+ *
+ * Usage : IncrementalLookupRefresh [host server IP] [card_member HDFS dir]
+ * [member_score HDFS dir]
+ */
+public class IncrementalLookupRefresh {
+
+	static final String DEFAULT_CARD_MEMBER_DIR = "/capstone_project/card_member";
+	static final String DEFAULT_MEMBER_SCORE_DIR = "/capstone_project/member_score";
+	static final String DEFAULT_MEMBER_SCORE_SNAPSHOT_DIR = "/capstone_project/member_score_snapshot";
+
+	/*
+	 * Number of last GENUINE transactions UCL is based on
+	 */
+	static final int UCL_WINDOW = 10;
+
+	static final long DEFAULT_WATERMARK_LAG_SECONDS = 60;
+
+	private static final int SCAN_CACHING = 1000;
+
+	public static void main(String[] args) throws Exception {
+
+		/*
+		 * Check if 1 to 3 arguments are passed to the program
+		 */
+		if (args.length < 1 || args.length > 3) {
+			System.out.println("Please enter 1st argument as host server IP");
+			System.out.println("Optionally enter 2nd argument as card_member HDFS directory (default : "
+					+ DEFAULT_CARD_MEMBER_DIR + ")");
+			System.out.println("Optionally enter 3rd argument as member_score HDFS directory (default : "
+					+ DEFAULT_MEMBER_SCORE_DIR + ")");
+			return;
+		}
+
+		CreditCardFraudDetection.hostServerIP = args[0];
+		Path cardMemberDir = new Path((args.length >= 2) ? args[1] : DEFAULT_CARD_MEMBER_DIR);
+		Path memberScoreDir = new Path((args.length == 3) ? args[2] : DEFAULT_MEMBER_SCORE_DIR);
+
+		long runStart = System.currentTimeMillis();
+		long watermark = LookupRefreshMarker.readWatermark();
+		long upper = runStart
+				- 1000L * Long.getLong("fraud.refresh.watermark.lag.seconds", DEFAULT_WATERMARK_LAG_SECONDS);
+
+		System.out.println("Incremental Lookup Refresh Start Time : " + TransactionTime.format(runStart)
+				+ " : Changes from : " + TransactionTime.format(watermark) + " : to : " + TransactionTime.format(upper));
+
+		if (upper <= watermark) {
+			System.out.println("No new changes to apply");
+			HBaseConnectionHolder.close();
+			return;
+		}
+
+		Configuration conf = new Configuration();
+		FileSystem fs = FileSystem.get(conf);
+		Path snapshotDir = new Path(
+				System.getProperty("fraud.refresh.score.snapshot.dir", DEFAULT_MEMBER_SCORE_SNAPSHOT_DIR));
+
+		Set<String> changedCards = findChangedCards(watermark, upper);
+		System.out.println("Cards with new GENUINE transactions : " + changedCards.size());
+
+		byte[] scoreChecksum = checksum(fs, memberScoreDir);
+		boolean scoresImported = fs.exists(memberScoreDir)
+				&& !Arrays.equals(scoreChecksum, LookupRefreshMarker.readScoreChecksum());
+
+		int transactionUpdates = 0;
+		int scoreUpdates = 0;
+
+		try (Table transactions = HBaseConnectionHolder.getTable(HBaseSchema.TRANSACTIONS_TABLE);
+				Table lookupTable = HBaseConnectionHolder.getTable(HBaseSchema.LOOKUP_TABLE);
+				BufferedMutator lookup = HBaseConnectionHolder.getBufferedMutator(HBaseSchema.LOOKUP_TABLE)) {
+
+			Map<String, Put> profilePuts = new HashMap<String, Put>();
+			Map<String, String> cardMembers = new HashMap<String, String>();
+			for (String cardID : changedCards) {
+				Put put = buildProfilePut(transactions, cardID, cardMembers);
+				if (put != null) {
+					profilePuts.put(cardID, put);
+				}
+			}
+
+			Map<String, Integer> changedScores = Collections.emptyMap();
+			if (scoresImported) {
+				changedScores = changedScores(fs, memberScoreDir, snapshotDir);
+				System.out.println("Members with changed score : " + changedScores.size());
+			}
+
+			/*
+			 * Scores of members of new cards, which are not changed scores, are read
+			 * from import for those members only
+			 */
+			Set<String> neededMembers = new HashSet<String>();
+			for (String cardID : cardsWithoutScore(lookupTable, profilePuts.keySet())) {
+				String memberID = cardMembers.get(cardID);
+				if (memberID != null && !changedScores.containsKey(memberID)) {
+					neededMembers.add(memberID);
+				}
+			}
+			Map<String, Integer> scores = new HashMap<String, Integer>(changedScores);
+			if (!neededMembers.isEmpty()) {
+				scores.putAll(readScores(fs, memberScoreDir, neededMembers));
+			}
+
+			for (Map.Entry<String, Put> entry : profilePuts.entrySet()) {
+				Integer score = scores.get(cardMembers.get(entry.getKey()));
+				if (score != null) {
+					entry.getValue().addColumn(HBaseSchema.LOOKUP_CARD_FAMILY, HBaseSchema.SCORE,
+							CellCodec.encodeInt(score));
+				}
+				lookup.mutate(entry.getValue());
+				transactionUpdates++;
+			}
+
+			if (!changedScores.isEmpty()) {
+				scoreUpdates = updateChangedScores(fs, cardMemberDir, lookup, profilePuts.keySet(), changedScores);
+			}
+		}
+
+		/*
+		 * Snapshot and checksum of applied import are kept only once lookup table is
+		 * updated, so a failed run compares against same snapshot again
+		 */
+		if (scoresImported) {
+			snapshot(fs, conf, memberScoreDir, snapshotDir);
+			LookupRefreshMarker.writeScoreChecksum(scoreChecksum);
+		}
+
+		LookupRefreshMarker.writeWatermark(upper);
+		if (transactionUpdates + scoreUpdates > 0) {
+			LookupRefreshMarker.mark(System.currentTimeMillis());
+		}
+
+		System.out.println("Incremental Lookup Refresh End Time : " + TransactionTime.now()
+				+ " : Cards Refreshed from Transactions : " + transactionUpdates + " : Scores Updated : "
+				+ scoreUpdates);
+
+		HBaseConnectionHolder.close();
+	}
+
+	/*
+	 * Card IDs of GENUINE transactions whose cells were written in [from, to)
+	 */
+	static Set<String> findChangedCards(long from, long to) throws IOException {
+
+		SingleColumnValueFilter genuine = new SingleColumnValueFilter(HBaseSchema.TRANSACTIONS_FAMILY,
+				HBaseSchema.STATUS, CompareOperator.EQUAL, Bytes.toBytes("GENUINE"));
+		genuine.setFilterIfMissing(true);
+
+		Scan scan = new Scan().setTimeRange(from, to).addColumn(HBaseSchema.TRANSACTIONS_FAMILY, HBaseSchema.CARD_ID)
+				.addColumn(HBaseSchema.TRANSACTIONS_FAMILY, HBaseSchema.STATUS).setFilter(genuine)
+				.setCaching(SCAN_CACHING).setCacheBlocks(false);
+
+		Set<String> cards = new HashSet<String>();
+		try (Table table = HBaseConnectionHolder.getTable(HBaseSchema.TRANSACTIONS_TABLE);
+				ResultScanner scanner = table.getScanner(scan)) {
+			for (Result result : scanner) {
+				byte[] cardID = result.getValue(HBaseSchema.TRANSACTIONS_FAMILY, HBaseSchema.CARD_ID);
+				if (cardID != null) {
+					cards.add(Bytes.toString(cardID));
+				}
+			}
+		}
+		return cards;
+	}
+
+	/*
+	 * Put of lookup row of a card from its last UCL_WINDOW GENUINE transactions,
+	 * or null if none is found. Member of last transaction is put into
+	 * cardMembers.
+	 */
+	static Put buildProfilePut(Table transactions, String cardID, Map<String, String> cardMembers)
+			throws IOException {
+
+		List<Double> amounts = new ArrayList<Double>(UCL_WINDOW);
+		String postcode = null;
+		long transactionDt = TransactionTime.NONE;
+
+		try (ResultScanner scanner = transactions
+				.getScanner(TransactionRowKey.lastTransactionsScan(cardID, "GENUINE", UCL_WINDOW))) {
+			for (Result result : scanner) {
+				byte[] amount = result.getValue(HBaseSchema.TRANSACTIONS_FAMILY, HBaseSchema.AMOUNT);
+				if (amount == null) {
+					continue;
+				}
+				amounts.add(CellCodec.decodeDouble(amount));
+
+				/*
+				 * Rows are newest first, so first one is last transaction of card
+				 */
+				if (transactionDt == TransactionTime.NONE) {
+					postcode = Bytes.toString(result.getValue(HBaseSchema.TRANSACTIONS_FAMILY, HBaseSchema.POSTCODE));
+					transactionDt = TransactionRowKey.epochMillis(result.getRow());
+					byte[] memberID = result.getValue(HBaseSchema.TRANSACTIONS_FAMILY, HBaseSchema.MEMBER_ID);
+					if (memberID != null) {
+						cardMembers.put(cardID, Bytes.toString(memberID));
+					}
+				}
+			}
+		}
+
+		if (amounts.isEmpty()) {
+			return null;
+		}
+
+		Put put = new Put(Bytes.toBytes(cardID));
+		put.addColumn(HBaseSchema.LOOKUP_CARD_FAMILY, HBaseSchema.UCL, CellCodec.encodeDouble(ucl(amounts)));
+		if (postcode != null) {
+			put.addColumn(HBaseSchema.LOOKUP_TRANSACTION_FAMILY, HBaseSchema.POSTCODE, Bytes.toBytes(postcode));
+		}
+		put.addColumn(HBaseSchema.LOOKUP_TRANSACTION_FAMILY, HBaseSchema.TRANSACTION_DT,
+				CellCodec.encodeTime(transactionDt));
+		return put;
+	}
+
+	/*
+	 * Average + 3 x population standard deviation of amounts
+	 */
+	static double ucl(List<Double> amounts) {
+		double sum = 0d;
+		for (double amount : amounts) {
+			sum += amount;
+		}
+		double mean = sum / amounts.size();
+		double squares = 0d;
+		for (double amount : amounts) {
+			squares += (amount - mean) * (amount - mean);
+		}
+		return mean + 3 * Math.sqrt(squares / amounts.size());
+	}
+
+	/*
+	 * Cards of given ones whose lookup row has no score, read by multi-Gets of
+	 * score column
+	 */
+	private static Set<String> cardsWithoutScore(Table lookupTable, Set<String> cardIDs) throws IOException {
+
+		Set<String> cards = new HashSet<String>();
+		List<String> keys = new ArrayList<String>(cardIDs);
+		for (int from = 0; from < keys.size(); from += SCAN_CACHING) {
+			List<String> batch = keys.subList(from, Math.min(keys.size(), from + SCAN_CACHING));
+			List<Get> gets = new ArrayList<Get>(batch.size());
+			for (String cardID : batch) {
+				gets.add(new Get(Bytes.toBytes(cardID)).addColumn(HBaseSchema.LOOKUP_CARD_FAMILY, HBaseSchema.SCORE));
+			}
+			Result[] results = lookupTable.get(gets);
+			for (int i = 0; i < results.length; i++) {
+				if (results[i].getValue(HBaseSchema.LOOKUP_CARD_FAMILY, HBaseSchema.SCORE) == null) {
+					cards.add(batch.get(i));
+				}
+			}
+		}
+		return cards;
+	}
+
+	/*
+	 * Upsert score of every card whose member score changed, reading only those
+	 * rows of card_member. Cards refreshed from transactions already got theirs.
+	 */
+	private static int updateChangedScores(FileSystem fs, Path cardMemberDir, BufferedMutator lookup,
+			Set<String> refreshedCards, Map<String, Integer> changedScores) throws IOException {
+
+		int updates = 0;
+		for (FileStatus file : dataFiles(fs, cardMemberDir)) {
+			try (BufferedReader reader = open(fs, file)) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					String[] str = line.split(",", 3);
+					if (str.length < 2) {
+						continue;
+					}
+					String cardID = str[0].trim();
+					Integer score = changedScores.get(str[1].trim());
+					if (score == null || refreshedCards.contains(cardID)) {
+						continue;
+					}
+					Put put = new Put(Bytes.toBytes(cardID));
+					put.addColumn(HBaseSchema.LOOKUP_CARD_FAMILY, HBaseSchema.SCORE, CellCodec.encodeInt(score));
+					lookup.mutate(put);
+					updates++;
+				}
+			}
+		}
+		return updates;
+	}
+
+	/*
+	 * Members whose score in import differs from snapshot of last applied import,
+	 * with their new score. Every member is changed if there is no snapshot.
+	 */
+	private static Map<String, Integer> changedScores(FileSystem fs, Path importDir, Path snapshotDir)
+			throws IOException {
+
+		Map<String, Integer> previous = readScores(fs, snapshotDir, null);
+		Map<String, Integer> changed = new HashMap<String, Integer>();
+		for (Map.Entry<String, Integer> entry : readScores(fs, importDir, null).entrySet()) {
+			if (!entry.getValue().equals(previous.get(entry.getKey()))) {
+				changed.put(entry.getKey(), entry.getValue());
+			}
+		}
+		return changed;
+	}
+
+	/*
+	 * Scores of member_score Sqoop output files of a directory, of given members
+	 * only unless members is null. Later files win for repeated members.
+	 */
+	private static Map<String, Integer> readScores(FileSystem fs, Path dir, Set<String> members)
+			throws IOException {
+
+		Map<String, Integer> scores = new HashMap<String, Integer>();
+		for (FileStatus file : dataFiles(fs, dir)) {
+			try (BufferedReader reader = open(fs, file)) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					String[] str = line.split(",", 3);
+					if (str.length < 2) {
+						continue;
+					}
+					String memberID = str[0].trim();
+					if (members != null && !members.contains(memberID)) {
+						continue;
+					}
+					try {
+						scores.put(memberID, Integer.valueOf(str[1].trim()));
+					} catch (NumberFormatException e) {
+						continue;
+					}
+				}
+			}
+		}
+		return scores;
+	}
+
+	/*
+	 * Sqoop output files of a directory in name order, none if it does not exist
+	 */
+	private static List<FileStatus> dataFiles(FileSystem fs, Path dir) throws IOException {
+
+		List<FileStatus> files = new ArrayList<FileStatus>();
+		if (!fs.exists(dir)) {
+			System.out.println("HDFS directory : " + dir + " : does not exist");
+			return files;
+		}
+
+		for (FileStatus file : fs.listStatus(dir)) {
+			String name = file.getPath().getName();
+			if (file.isFile() && !name.startsWith("_") && !name.startsWith(".")) {
+				files.add(file);
+			}
+		}
+		Collections.sort(files, Comparator.comparing((FileStatus file) -> file.getPath().getName()));
+		return files;
+	}
+
+	private static BufferedReader open(FileSystem fs, FileStatus file) throws IOException {
+		return new BufferedReader(new InputStreamReader(fs.open(file.getPath()), StandardCharsets.UTF_8));
+	}
+
+	/*
+	 * MD5 over names and HDFS checksums of Sqoop output files of a directory.
+	 * Content is digested where file system has no checksum (local file system).
+	 */
+	private static byte[] checksum(FileSystem fs, Path dir) throws IOException {
+
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("MD5");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+
+		byte[] buffer = new byte[64 * 1024];
+		for (FileStatus file : dataFiles(fs, dir)) {
+			digest.update(Bytes.toBytes(file.getPath().getName()));
+			FileChecksum checksum = fs.getFileChecksum(file.getPath());
+			if (checksum != null) {
+				digest.update(checksum.getBytes());
+				continue;
+			}
+			try (InputStream in = fs.open(file.getPath())) {
+				int read;
+				while ((read = in.read(buffer)) > 0) {
+					digest.update(buffer, 0, read);
+				}
+			}
+		}
+		return digest.digest();
+	}
+
+	/*
+	 * Replace snapshot directory with a copy of applied import
+	 */
+	private static void snapshot(FileSystem fs, Configuration conf, Path importDir, Path snapshotDir)
+			throws IOException {
+		if (fs.exists(snapshotDir)) {
+			fs.delete(snapshotDir, true);
+		}
+		if (fs.exists(importDir)) {
+			FileUtil.copy(fs, importDir, fs, snapshotDir, false, conf);
+		}
+	}
+}
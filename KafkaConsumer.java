@@ -1,10 +1,10 @@
 package com.upgrad.creditcardfrauddetection;
 
-import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.kafka.clients.consumer.ConsumerRecord;
@@ -15,12 +15,17 @@ import org.apache.spark.SparkConf;
 import org.apache.spark.api.java.JavaRDD;
 import org.apache.spark.api.java.function.VoidFunction;
 import org.apache.spark.streaming.Durations;
+import org.apache.spark.streaming.StateSpec;
 import org.apache.spark.streaming.api.java.JavaDStream;
 import org.apache.spark.streaming.api.java.JavaInputDStream;
+import org.apache.spark.streaming.api.java.JavaMapWithStateDStream;
 import org.apache.spark.streaming.api.java.JavaStreamingContext;
 import org.apache.spark.streaming.kafka010.ConsumerStrategies;
 import org.apache.spark.streaming.kafka010.KafkaUtils;
 import org.apache.spark.streaming.kafka010.LocationStrategies;
+import org.apache.spark.util.LongAccumulator;
+
+import scala.Tuple2;
 
 public class KafkaConsumer {
 
@@ -28,22 +33,65 @@ public class KafkaConsumer {
 	 * Setup GROUP_ID in such a way that unique every time
 	 */
 	public static String GROUP_ID = "amitgoelkafkaspark"
-			+ new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date());
+			+ TransactionTime.now();
+
+	/*
+	 * Processing modes supported by this consumer
+	 */
+	public static final String MODE_RECORD = "record";
+	public static final String MODE_PARTITION = "partition";
+	public static final String MODE_KEYED = "keyed";
+	public static final String MODE_STATEFUL = "stateful";
+	public static final String MODE_ASYNC = "async";
+	public static final String MODE_THREADED = "threaded";
+	public static final List<String> MODES = Arrays.asList(MODE_RECORD, MODE_PARTITION, MODE_KEYED,
+			MODE_STATEFUL, MODE_ASYNC, MODE_THREADED);
 
 	public static void main(String[] args) throws Exception {
 
 		/*
-		 * Check if 1 argument is passed to the program
+		 * Check if 1 or 2 arguments are passed to the program
 		 */
-		if (args.length != 1) {
+		if (args.length < 1 || args.length > 2) {
 			System.out.println("Please enter 1st argument as host server IP");
+			System.out.println("Optionally enter 2nd argument as processing mode, one of : " + MODES + " (default : "
+					+ MODE_RECORD + ")");
+			return;
+		}
+
+		/*
+		 * Processing mode decides whether each record makes its own HBase calls or
+		 * records are classified per partition with batched HBase reads and writes.
+		 * Keyed mode additionally repartitions records by card_id first, so all
+		 * transactions of a card in a batch are classified in order by one task.
+		 * Stateful mode keeps per card state (UCL window, last transaction, score)
+		 * in Spark with mapWithState and reads lookup table only for new cards.
+		 * Async mode keeps many lookups and writes of a partition in flight at once
+		 * through HBase AsyncConnection (see AsyncFraudDetection). Threaded mode runs
+		 * per record processing of a partition on one (virtual) thread per record
+		 * (see ThreadedFraudDetection).
+		 */
+		final String processingMode = (args.length == 2) ? args[1] : MODE_RECORD;
+		if (!MODES.contains(processingMode)) {
+			System.out.println("Unknown processing mode : " + processingMode);
+			return;
+		}
+		if (processingMode.equals(MODE_ASYNC) && !FraudStores.isHBase()) {
+			System.out.println("Processing mode " + MODE_ASYNC + " needs HBase store (fraud.store)");
 			return;
 		}
+		System.out.println("Using processing mode : " + processingMode);
 		/*
 		 * Print GROUP_ID for current Kafka stream
 		 */
 		System.out.println("Using group ID : " + GROUP_ID + "  for current Kafka stream.");
 
+		/*
+		 * Expose metrics of driver (records per batch) through JMX and HTTP, executors
+		 * expose theirs on first record they process
+		 */
+		FraudMetrics.getInstance();
+
 		/*
 		 * Set Logger to OFF
 		 */
@@ -66,6 +114,7 @@ public class KafkaConsumer {
 		 * changing with restart of EC2 instance every time.
 		 */
 		CreditCardFraudDetection.hostServerIP = args[0];
+		final String hostServerIP = args[0];
 
 		/*
 		 * Set parameters for Kafka stream
@@ -73,7 +122,7 @@ public class KafkaConsumer {
 		Map<String, Object> kafkaParams = new HashMap<>();
 		kafkaParams.put("bootstrap.servers", "100.24.223.181:9092");
 		kafkaParams.put("key.deserializer", StringDeserializer.class);
-		kafkaParams.put("value.deserializer", StringDeserializer.class);
+		kafkaParams.put("value.deserializer", TransactionDeserializer.class);
 		kafkaParams.put("group.id", GROUP_ID);
 		kafkaParams.put("auto.offset.reset", "earliest");
 		kafkaParams.put("enable.auto.commit", true);
@@ -86,77 +135,192 @@ public class KafkaConsumer {
 		/*
 		 * Consume input Kafka Stream and convert into Spark DStreams
 		 */
-		JavaInputDStream<ConsumerRecord<String, String>> stream = KafkaUtils.createDirectStream(jssc,
-				LocationStrategies.PreferConsistent(),
-				ConsumerStrategies.<String, String>Subscribe(topics, kafkaParams));
+		JavaInputDStream<ConsumerRecord<String, CreditCardFraudDetection>> stream = KafkaUtils.createDirectStream(
+				jssc, LocationStrategies.PreferConsistent(),
+				ConsumerStrategies.<String, CreditCardFraudDetection>Subscribe(topics, kafkaParams));
 
 		/*
-		 * Use map transformation on input stream and get the value part
+		 * Get the value part of input stream, already decoded into
+		 * CreditCardFraudDetection by TransactionDeserializer, along with Kafka
+		 * timestamp of record, and classify it
 		 */
-		JavaDStream<String> jds = stream.map(x -> x.value());
+		processStream(jssc, stream.map(x -> {
+			CreditCardFraudDetection transaction = x.value();
+			transaction.setReceivedMillis(x.timestamp());
+			return transaction;
+		}), processingMode, hostServerIP);
 
 		/*
-		 * Print count of records present
+		 * Print current time stamp before starting
 		 */
-		jds.foreachRDD(x -> System.out.println("Total Number of Transactions to be Processed : " + x.count() + "\n"));
+		System.out.println("\nStart Time : " + TransactionTime.now() + "\n");
 
 		/*
-		 * Print all the data so can be used for verification later if needed
+		 * Start Spark Streaming
 		 */
-		jds.foreachRDD(new VoidFunction<JavaRDD<String>>() {
-
-			private static final long serialVersionUID = 1L;
-
-			@Override
-			public void call(JavaRDD<String> rdd) {
-
-				rdd.foreach(a -> System.out.println(a));
-			}
-		});
+		jssc.start();
 
 		/*
-		 * Map data from input stream to CreditCardFraudDetection class constructor
+		 * Await Termination to respond to Ctrl+C and gracefully close Spark Streaming
 		 */
-		JavaDStream<CreditCardFraudDetection> jds_mapped = jds.map(x -> new CreditCardFraudDetection(x));
+		jssc.awaitTermination();
 
 		/*
-		 * Call FraudDetection method in CreditCardFraudDetection class
+		 * Print current time stamp before closing
 		 */
-		jds_mapped.foreachRDD(new VoidFunction<JavaRDD<CreditCardFraudDetection>>() {
+		System.out.println("\nEnd Time : " + TransactionTime.now() + "\n");
 
-			private static final long serialVersionUID = 1L;
+		/*
+		 * Close Spark Streaming
+		 */
+		jssc.close();
 
-			@Override
-			public void call(JavaRDD<CreditCardFraudDetection> rdd) {
-				rdd.foreach(x -> x.FraudDetection(x));
-			}
+	}
 
-		});
+	/*
+	 * processStream method classifies and stores transactions of input stream in
+	 * given processing mode, printing count of each batch. It is used for Kafka
+	 * stream by main method and for replayed stream by LoadHarness.
+	 */
+	static void processStream(JavaStreamingContext jssc, JavaDStream<CreditCardFraudDetection> transactions,
+			final String processingMode, final String hostServerIP) {
 
 		/*
-		 * Print current time stamp before starting
+		 * Number of partitions of keyed mode is kept same for every batch, so a card
+		 * is always assigned to same partition
 		 */
-		System.out.println("\nStart Time : " + new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date()) + "\n");
+		int keyedPartitions = Integer.getInteger("fraud.keyed.partitions", 0);
+		final CardIdPartitioner cardIdPartitioner = new CardIdPartitioner(
+				(keyedPartitions > 0) ? keyedPartitions : jssc.sparkContext().defaultParallelism());
 
 		/*
-		 * Start Spark Streaming
+		 * Count of records of current batch, reset by driver before each batch is
+		 * processed and printed once it is done
 		 */
-		jssc.start();
+		final LongAccumulator batchCount = jssc.sparkContext().sc().longAccumulator("Transactions Processed");
 
 		/*
-		 * Await Termination to respond to Ctrl+C and gracefully close Spark Streaming
+		 * Count each transaction, in the same pass that classifies it, so each batch
+		 * is read from Kafka only once. Input fields of every transaction are kept in
+		 * DecisionLog for verification, and are printed as well at verbose level.
 		 */
-		jssc.awaitTermination();
+		JavaDStream<CreditCardFraudDetection> jds_mapped = transactions.map(transaction -> {
+			if (DecisionLog.VERBOSE) {
+				System.out.println(transaction);
+			}
+			batchCount.add(1);
+			return transaction;
+		});
 
 		/*
-		 * Print current time stamp before closing
+		 * In stateful mode, classify transactions against per card state and write
+		 * classified transactions per partition
 		 */
-		System.out.println("\nEnd Time : " + new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date()) + "\n");
+		if (processingMode.equals(MODE_STATEFUL)) {
 
-		/*
-		 * Close Spark Streaming
-		 */
-		jssc.close();
+			/*
+			 * mapWithState needs checkpointing of state
+			 */
+			jssc.checkpoint(System.getProperty("fraud.checkpoint.dir", "checkpoint"));
+
+			long profileMaxAgeSeconds = Long.getLong("fraud.state.profile.max.age.seconds",
+					CardProfileCache.DEFAULT_TTL_SECONDS);
+			StateSpec<String, CreditCardFraudDetection, CardState, CreditCardFraudDetection> stateSpec = StateSpec
+					.function(new CardStateMapping(hostServerIP, profileMaxAgeSeconds * 1000))
+					.partitioner(cardIdPartitioner);
 
+			/*
+			 * Optionally seed UCL window of cards from export of last 10 GENUINE
+			 * transactions, so UCL is computed in stream from first transaction
+			 */
+			String seedPath = System.getProperty("fraud.state.seed.path");
+			if (seedPath != null) {
+				stateSpec = stateSpec.initialState(CardStateMapping.loadSeed(jssc.sparkContext(), seedPath));
+			}
+
+			JavaMapWithStateDStream<String, CreditCardFraudDetection, CardState, CreditCardFraudDetection> classified = jds_mapped
+					.mapToPair(x -> new Tuple2<String, CreditCardFraudDetection>(CardStateMapping.keyOf(x), x))
+					.mapWithState(stateSpec);
+
+			classified.foreachRDD(new VoidFunction<JavaRDD<CreditCardFraudDetection>>() {
+
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				public void call(JavaRDD<CreditCardFraudDetection> rdd) {
+					batchCount.reset();
+					rdd.foreachPartition(x -> {
+						CreditCardFraudDetection.initHostServerIP(hostServerIP);
+						List<CreditCardFraudDetection> transactions = new ArrayList<CreditCardFraudDetection>();
+						x.forEachRemaining(transactions::add);
+						if (!transactions.isEmpty()) {
+							CreditCardFraudDetection.updateNoSQLDB(transactions);
+						}
+					});
+					printBatchCount(batchCount);
+				}
+			});
+		} else {
+
+			/*
+			 * Call FraudDetection method per record, or FraudDetectionPartition method per
+			 * partition, in CreditCardFraudDetection class, or AsyncFraudDetection per
+			 * partition. Record and threaded modes both run FraudDetection per record
+			 * through ThreadedFraudDetection, sequentially or on threads, which reports
+			 * throughput and latency of each partition.
+			 */
+			jds_mapped.foreachRDD(new VoidFunction<JavaRDD<CreditCardFraudDetection>>() {
+
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				public void call(JavaRDD<CreditCardFraudDetection> rdd) {
+					batchCount.reset();
+
+					/*
+					 * hostServerIP is captured by closures so executors can set up their shared
+					 * HBase connection as well
+					 */
+					if (processingMode.equals(MODE_KEYED)) {
+						/*
+						 * Shuffle keeps arrival order of records coming from same Kafka partition, so
+						 * if producer keys transactions by card_id, a card's transactions stay in
+						 * order within its partition
+						 */
+						rdd.mapToPair(x -> new Tuple2<String, CreditCardFraudDetection>(x.getCard_id(), x))
+								.partitionBy(cardIdPartitioner).values().foreachPartition(x -> {
+									CreditCardFraudDetection.initHostServerIP(hostServerIP);
+									CreditCardFraudDetection.FraudDetectionPartition(x);
+								});
+					} else if (processingMode.equals(MODE_ASYNC)) {
+						rdd.foreachPartition(x -> {
+							CreditCardFraudDetection.initHostServerIP(hostServerIP);
+							AsyncFraudDetection.processPartition(x);
+						});
+					} else if (processingMode.equals(MODE_PARTITION)) {
+						rdd.foreachPartition(x -> {
+							CreditCardFraudDetection.initHostServerIP(hostServerIP);
+							CreditCardFraudDetection.FraudDetectionPartition(x);
+						});
+					} else {
+						final boolean threaded = processingMode.equals(MODE_THREADED);
+						rdd.foreachPartition(x -> {
+							CreditCardFraudDetection.initHostServerIP(hostServerIP);
+							ThreadedFraudDetection.processPartition(x, threaded);
+						});
+					}
+					printBatchCount(batchCount);
+				}
+
+			});
+		}
+	}
+
+	/*
+	 * Print count of records of the batch just processed and add it to metrics
+	 */
+	private static void printBatchCount(LongAccumulator batchCount) {
+		FraudMetrics.recordBatch(batchCount.value());
+		System.out.println("\nTotal Number of Transactions Processed : " + batchCount.value() + "\n");
 	}
 }
@@ -0,0 +1,125 @@
+package com.upgrad.creditcardfrauddetection;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * LatencyHistogram records latencies in nanoseconds into log-linear buckets,
+ * same scheme as HdrHistogram : values below 2^SUB_BUCKET_BITS get a bucket
+ * each, and every further power of 2 is split into 2^SUB_BUCKET_BITS equal
+ * buckets, so any percentile is reported within about 3 % of recorded value
+ * with fixed memory. Values above 2^MAX_BITS nanoseconds (about 18 minutes)
+ * go to last bucket.
+ *
+ * Recording is lock-free (one atomic increment per value), so a histogram is
+ * shared by all task threads of a JVM. Percentiles read while values are
+ * being recorded are approximate.
+ */
+final class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int MAX_BITS = 40;
+
+	private static final int BUCKETS = SUB_BUCKETS + (MAX_BITS - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(Long::max, 0);
+
+	/*
+	 * Record one latency in nanoseconds, negative values are recorded as 0
+	 */
+	void record(long nanos) {
+		long value = Math.max(0L, nanos);
+		counts.incrementAndGet(bucketOf(value));
+		count.increment();
+		sum.add(value);
+		max.accumulate(value);
+	}
+
+	/*
+	 * Record time elapsed since startNanos (System.nanoTime)
+	 */
+	void recordSince(long startNanos) {
+		record(System.nanoTime() - startNanos);
+	}
+
+	static int bucketOf(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int shift = (63 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+		if (shift > MAX_BITS - SUB_BUCKET_BITS) {
+			return BUCKETS - 1;
+		}
+		return SUB_BUCKETS + shift * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+	}
+
+	/*
+	 * Middle of value range of a bucket
+	 */
+	static long valueOf(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+		long lowest = (long) ((bucket - SUB_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS) << shift;
+		return lowest + ((1L << shift) >> 1);
+	}
+
+	long getCount() {
+		return count.sum();
+	}
+
+	long getSumNanos() {
+		return sum.sum();
+	}
+
+	long getMaxNanos() {
+		return max.get();
+	}
+
+	double getMeanNanos() {
+		long n = count.sum();
+		return (n == 0) ? 0d : (double) sum.sum() / n;
+	}
+
+	/*
+	 * Value at given percentile (0 to 100) in nanoseconds, 0 if nothing was
+	 * recorded. Never more than recorded maximum.
+	 */
+	long getPercentileNanos(double percentile) {
+
+		long total = 0L;
+		long[] snapshot = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			snapshot[i] = counts.get(i);
+			total += snapshot[i];
+		}
+		if (total == 0) {
+			return 0L;
+		}
+
+		long rank = Math.max(1L, (long) Math.ceil(percentile / 100d * total));
+		long seen = 0L;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += snapshot[i];
+			if (seen >= rank) {
+				return Math.min(valueOf(i), getMaxNanos());
+			}
+		}
+		return getMaxNanos();
+	}
+
+	/*
+	 * Nearest-rank percentile (fraction 0 to 1) of sorted values, exact
+	 * counterpart of getPercentileNanos for latencies kept in an array
+	 */
+	static long percentile(long[] sorted, double fraction) {
+		int rank = (int) Math.ceil(fraction * sorted.length);
+		return sorted[Math.max(0, rank - 1)];
+	}
+}
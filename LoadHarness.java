@@ -0,0 +1,516 @@
+package com.upgrad.creditcardfrauddetection;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.spark.SparkConf;
+import org.apache.spark.storage.StorageLevel;
+import org.apache.spark.streaming.Durations;
+import org.apache.spark.streaming.api.java.JavaDStream;
+import org.apache.spark.streaming.api.java.JavaStreamingContext;
+import org.apache.spark.streaming.receiver.Receiver;
+
+import scala.Tuple2;
+
+/*
+ * LoadHarness replays transactions through the full KafkaConsumer pipeline
+ * (decoding, processing mode, classification, storing) against
+ * InMemoryFraudStore, to find throughput ceiling of one box without Kafka or
+ * HBase.
+ *
+ * Kafka is replaced by StandInBroker, a Spark receiver which offers
+ * transactions at increasing rates (fraud.load.rates, transactions/sec), each
+ * for fraud.load.step.seconds followed by fraud.load.pause.seconds without
+ * load to let backlog drain. First rate is also offered for
+ * fraud.load.warmup.seconds before, without measuring, so JIT compilation and
+ * first Spark jobs do not count against it. Each transaction gets time it was offered as its
+ * Kafka timestamp, and latency is measured from then to time it is stored
+ * (swipe-to-verdict latency, same as StructuredKafkaConsumer reports).
+ *
+ * For each rate, sustained transactions/sec (stored / time from first to last
+ * store, see Schedule.sustainedRate) and p50 / p99 / max latency are printed. A rate is sustained if
+ * all its transactions are stored before next rate starts and sustained
+ * transactions/sec is at least 95 % of offered; run stops at first rate which
+ * is not, and highest sustained rate is reported as ceiling.
+ *
+ * Transactions are either SyntheticData (default, lookup profiles and zip codes
+ * of data set are used) or rows of card_transactions.csv (card_id, member_id,
+ * amount, postcode, pos_id, transaction_dt, status), replayed in file order
+ * and repeated as needed. Lookup profiles of CSV cards are computed from their
+ * last 10 GENUINE rows, same as lookup refresh job; member score is not in the
+ * file, so all cards get fraud.load.score (default 500). Zip codes are read
+ * from fraud.zipcode.dir.
+ *
+ * Receiver holds one task thread for whole run, so Spark runs locally with
+ * fraud.load.threads task threads (default one more than cores). Decision log
+ * is best turned off (-Dfraud.log.level=off) so it does not compete for disk.
+ */
+public class LoadHarness {
+
+	static final String SOURCE_SYNTHETIC = "synthetic";
+	static final String DEFAULT_RATES = "1000,2000,5000,10000,20000,50000,100000";
+	static final int DEFAULT_STEP_SECONDS = 30;
+	static final int DEFAULT_PAUSE_SECONDS = 10;
+	static final int DEFAULT_WARMUP_SECONDS = 20;
+	static final int DEFAULT_SCORE = 500;
+
+	/*
+	 * Processing modes which can run on replayed stream. Async mode calls HBase
+	 * directly.
+	 */
+	static final List<String> MODES = Arrays.asList(KafkaConsumer.MODE_RECORD, KafkaConsumer.MODE_PARTITION,
+			KafkaConsumer.MODE_KEYED, KafkaConsumer.MODE_STATEFUL, KafkaConsumer.MODE_THREADED);
+
+	/*
+	 * Share of offered rate which must be sustained
+	 */
+	static final double SUSTAINED_FRACTION = 0.95;
+
+	/*
+	 * Time given to streaming context to start before first rate is offered
+	 */
+	private static final long LEAD_MILLIS = 5000L;
+
+	/*
+	 * Batch interval, same as KafkaConsumer
+	 */
+	static final long BATCH_MILLIS = 1000L;
+
+	public static void main(String[] args) throws Exception {
+
+		if (args.length > 2) {
+			System.out.println("Optionally enter 1st argument as processing mode, one of : " + MODES + " (default : "
+					+ KafkaConsumer.MODE_PARTITION + ")");
+			System.out.println("Optionally enter 2nd argument as " + SOURCE_SYNTHETIC
+					+ " or path of card_transactions.csv (default : " + SOURCE_SYNTHETIC + ")");
+			return;
+		}
+
+		final String processingMode = (args.length >= 1) ? args[0] : KafkaConsumer.MODE_PARTITION;
+		if (!MODES.contains(processingMode)) {
+			System.out.println("Processing mode not supported by load harness : " + processingMode + " : use one of : "
+					+ MODES);
+			return;
+		}
+		final String source = (args.length == 2) ? args[1] : SOURCE_SYNTHETIC;
+
+		long[] rates = parseRates(System.getProperty("fraud.load.rates", DEFAULT_RATES));
+		long stepMillis = Integer.getInteger("fraud.load.step.seconds", DEFAULT_STEP_SECONDS) * 1000L;
+		long pauseMillis = Integer.getInteger("fraud.load.pause.seconds", DEFAULT_PAUSE_SECONDS) * 1000L;
+		long warmupMillis = Integer.getInteger("fraud.load.warmup.seconds", DEFAULT_WARMUP_SECONDS) * 1000L;
+
+		/*
+		 * Seed in memory lookup store from source, and install it behind a sink which
+		 * measures latency of every stored transaction
+		 */
+		InMemoryFraudStore store = InMemoryFraudStore.getInstance();
+		if (source.equals(SOURCE_SYNTHETIC)) {
+			SyntheticData data = SyntheticData.get();
+			store.load(data.profiles.values());
+			System.setProperty("fraud.zipcode.dir", data.writeZipCodeDirectory().getPath());
+		} else {
+			store.load(loadProfiles(source));
+		}
+		DistanceUtility.getInstance();
+
+		System.out.println("Using processing mode : " + processingMode + " : source : " + source + " : rates : "
+				+ Arrays.toString(rates) + " : step (s) : " + (stepMillis / 1000) + " : pause (s) : "
+				+ (pauseMillis / 1000) + " : warmup (s) : " + (warmupMillis / 1000));
+
+		FraudMetrics.getInstance();
+		Logger.getLogger("org").setLevel(Level.OFF);
+		Logger.getLogger("akka").setLevel(Level.OFF);
+
+		int threads = Integer.getInteger("fraud.load.threads", Runtime.getRuntime().availableProcessors() + 1);
+		SparkConf sparkConf = new SparkConf().setAppName("CreditCardFraudDetectionLoadHarness")
+				.setMaster("local[" + Math.max(2, threads) + "]");
+		JavaStreamingContext jssc = new JavaStreamingContext(sparkConf, Durations.milliseconds(BATCH_MILLIS));
+
+		/*
+		 * Schedule starts once Spark context is up, so only receiver start falls in
+		 * lead time. Batches start at multiples of batch interval, so schedule is
+		 * aligned to them and each second of a rate is one batch.
+		 */
+		long startMillis = (System.currentTimeMillis() + LEAD_MILLIS) / BATCH_MILLIS * BATCH_MILLIS + BATCH_MILLIS;
+		Schedule schedule = new Schedule(rates, stepMillis, pauseMillis, startMillis, warmupMillis);
+		MeasuringSink sink = new MeasuringSink(store, schedule);
+		FraudStores.install(store, sink);
+
+		/*
+		 * Offered transactions are decoded from their bytes by same deserializer as
+		 * Kafka records, and go through same pipeline as Kafka stream
+		 */
+		JavaDStream<CreditCardFraudDetection> transactions = jssc
+				.receiverStream(new StandInBroker(source, schedule)).map(x -> {
+					CreditCardFraudDetection transaction = new TransactionDeserializer().deserialize(null, x._2());
+					transaction.setReceivedMillis(x._1());
+					return transaction;
+				});
+		KafkaConsumer.processStream(jssc, transactions, processingMode, "localhost");
+
+		jssc.start();
+
+		/*
+		 * Evaluate each rate once its pause is over, stop at first one not sustained
+		 */
+		List<String> report = new ArrayList<String>();
+		long ceiling = 0L;
+		for (int step = 0; step < rates.length; step++) {
+			long evaluateAt = schedule.stepStart(step) + stepMillis + pauseMillis;
+			long wait = evaluateAt - System.currentTimeMillis();
+			if (wait > 0) {
+				Thread.sleep(wait);
+			}
+			report.add(schedule.describe(step));
+			System.out.println("\nLoad Step : " + report.get(report.size() - 1) + "\n");
+			if (!schedule.isSustained(step)) {
+				break;
+			}
+			ceiling = rates[step];
+		}
+
+		jssc.stop(true, false);
+
+		System.out.println("\n===================================================================");
+		System.out.println("\nLoad Harness Report : processing mode : " + processingMode + " : source : " + source);
+		for (String line : report) {
+			System.out.println(line);
+		}
+		System.out.println("\nScaling Ceiling (transactions/sec) : "
+				+ ((ceiling > 0) ? Long.toString(ceiling) : "below " + rates[0]));
+		System.out.println("\nStore : " + store.stats());
+		System.out.println("\n===================================================================");
+	}
+
+	private static long[] parseRates(String rates) {
+		String[] values = rates.split(",");
+		long[] parsed = new long[values.length];
+		for (int i = 0; i < values.length; i++) {
+			parsed[i] = Long.parseLong(values[i].trim());
+			if (parsed[i] <= 0) {
+				throw new IllegalArgumentException("Offered rate must be positive : " + parsed[i]);
+			}
+		}
+		return parsed;
+	}
+
+	/*
+	 * Schedule of offered rates shared by receiver and measuring sink : first
+	 * rate is offered for warmupMillis, not measured, then rate i is offered from
+	 * stepStart(i) for stepMillis, each followed by pauseMillis without load.
+	 * Results of each rate are collected here.
+	 */
+	@SuppressWarnings("serial")
+	static final class Schedule implements java.io.Serializable {
+
+		final long[] rates;
+		final long stepMillis;
+		final long pauseMillis;
+		final long startMillis;
+		final long warmupMillis;
+
+		private transient LatencyHistogram[] latencies;
+		private transient LongAdder[] stored;
+		private transient LongAccumulator[] firstStoredAt;
+		private transient LongAccumulator[] lastStoredAt;
+
+		Schedule(long[] rates, long stepMillis, long pauseMillis, long startMillis, long warmupMillis) {
+			this.rates = rates;
+			this.stepMillis = stepMillis;
+			this.pauseMillis = pauseMillis;
+			this.startMillis = startMillis;
+			this.warmupMillis = warmupMillis;
+			this.latencies = new LatencyHistogram[rates.length];
+			this.stored = new LongAdder[rates.length];
+			this.firstStoredAt = new LongAccumulator[rates.length];
+			this.lastStoredAt = new LongAccumulator[rates.length];
+			for (int i = 0; i < rates.length; i++) {
+				latencies[i] = new LatencyHistogram();
+				stored[i] = new LongAdder();
+				firstStoredAt[i] = new LongAccumulator(Long::min, Long.MAX_VALUE);
+				lastStoredAt[i] = new LongAccumulator(Long::max, 0);
+			}
+		}
+
+		long stepStart(int step) {
+			return startMillis + warmupMillis + pauseMillis + step * (stepMillis + pauseMillis);
+		}
+
+		/*
+		 * Transactions offered at a rate
+		 */
+		long offered(int step) {
+			return rates[step] * stepMillis / 1000;
+		}
+
+		/*
+		 * Step a transaction offered at given time belongs to, -1 if none
+		 */
+		int stepOf(long offeredMillis) {
+			if (offeredMillis < stepStart(0)) {
+				return -1;
+			}
+			long step = (offeredMillis - stepStart(0)) / (stepMillis + pauseMillis);
+			return (step < rates.length) ? (int) step : -1;
+		}
+
+		void recordStored(long offeredMillis, long storedAt) {
+			int step = stepOf(offeredMillis);
+			if (step >= 0) {
+				latencies[step].record((storedAt - offeredMillis) * 1000000L);
+				stored[step].increment();
+				firstStoredAt[step].accumulate(storedAt);
+				lastStoredAt[step].accumulate(storedAt);
+			}
+		}
+
+		/*
+		 * When processing keeps up, time from first to last store of a rate is length
+		 * of step give or take one batch, as transactions are stored batch by batch.
+		 * When backlog builds up it is longer, and stored / that time less one batch
+		 * is rate processing managed.
+		 */
+		double sustainedRate(int step) {
+			if (stored[step].sum() == 0) {
+				return 0d;
+			}
+			long elapsed = Math.max(stepMillis,
+					lastStoredAt[step].get() - firstStoredAt[step].get() - BATCH_MILLIS);
+			return (elapsed <= 0) ? 0d : stored[step].sum() * 1000d / elapsed;
+		}
+
+		boolean isSustained(int step) {
+			return stored[step].sum() >= offered(step) && sustainedRate(step) >= SUSTAINED_FRACTION * rates[step];
+		}
+
+		String describe(int step) {
+			LatencyHistogram histogram = latencies[step];
+			return "Offered (tps) : " + rates[step] + " : Sustained (tps) : " + Math.round(sustainedRate(step))
+					+ " : Stored / Offered : " + stored[step].sum() + " / " + offered(step)
+					+ " : Latency (ms) p50 / p99 / Max : " + (histogram.getPercentileNanos(50) / 1000000) + " / "
+					+ (histogram.getPercentileNanos(99) / 1000000) + " / " + (histogram.getMaxNanos() / 1000000)
+					+ (isSustained(step) ? "" : " : NOT SUSTAINED");
+		}
+	}
+
+	/*
+	 * MeasuringSink stores transactions through in memory store and records
+	 * latency of each against schedule. Driver and executors share one JVM in
+	 * local mode, so it is installed on driver.
+	 */
+	static final class MeasuringSink implements TransactionSink {
+
+		private final TransactionSink delegate;
+		private final Schedule schedule;
+
+		MeasuringSink(TransactionSink delegate, Schedule schedule) {
+			this.delegate = delegate;
+			this.schedule = schedule;
+		}
+
+		@Override
+		public void write(CreditCardFraudDetection transaction) throws IOException {
+			delegate.write(transaction);
+			schedule.recordStored(transaction.getReceivedMillis(), System.currentTimeMillis());
+		}
+
+		@Override
+		public void writeAll(List<CreditCardFraudDetection> transactions) throws IOException {
+			delegate.writeAll(transactions);
+			long storedAt = System.currentTimeMillis();
+			for (CreditCardFraudDetection transaction : transactions) {
+				schedule.recordStored(transaction.getReceivedMillis(), storedAt);
+			}
+		}
+	}
+
+	/*
+	 * StandInBroker offers transactions of source as Kafka value bytes, each with
+	 * time it was offered, at rates of schedule. Offer times are spread evenly
+	 * over each second, as records of many producers would arrive, and are set
+	 * by schedule, not by when receiver got to them, so a receiver falling behind
+	 * shows up as latency.
+	 */
+	@SuppressWarnings("serial")
+	static final class StandInBroker extends Receiver<Tuple2<Long, byte[]>> {
+
+		/*
+		 * Receiver hands transactions to Spark in blocks of this many milliseconds of
+		 * load, same as default spark.streaming.blockInterval. Each block is one
+		 * partition of its batch.
+		 */
+		private static final long BLOCK_MILLIS = 200L;
+
+		private final String source;
+		private final Schedule schedule;
+
+		StandInBroker(String source, Schedule schedule) {
+			super(StorageLevel.MEMORY_ONLY());
+			this.source = source;
+			this.schedule = schedule;
+		}
+
+		@Override
+		public void onStart() {
+			Thread thread = new Thread(this::offer, "stand-in-broker");
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		@Override
+		public void onStop() {
+		}
+
+		private void offer() {
+
+			byte[][] records;
+			try {
+				records = loadTransactions(source);
+			} catch (IOException e) {
+				stop("Transactions could not be loaded from : " + source, e);
+				return;
+			}
+			if (records.length == 0) {
+				stop("No transactions in : " + source);
+				return;
+			}
+
+			try {
+				int next = offer(records, 0, schedule.rates[0], schedule.startMillis, schedule.warmupMillis);
+				for (int step = 0; step < schedule.rates.length && !isStopped(); step++) {
+					next = offer(records, next, schedule.rates[step], schedule.stepStart(step), schedule.stepMillis);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		/*
+		 * Offer records from index next at given rate for given time, returns index
+		 * of record to offer next
+		 */
+		private int offer(byte[][] records, int next, long rate, long from, long millis)
+				throws InterruptedException {
+
+			long total = rate * millis / 1000;
+			long emitted = 0L;
+
+			while (emitted < total && !isStopped()) {
+				long elapsed = System.currentTimeMillis() - from;
+				long due = (elapsed < 0) ? 0L : Math.min(total, elapsed * rate / 1000);
+				if (due <= emitted || (due < total && (due - emitted) * 1000 < BLOCK_MILLIS * rate)) {
+					Thread.sleep((elapsed < 0) ? Math.min(BLOCK_MILLIS, -elapsed) : 5L);
+					continue;
+				}
+				List<Tuple2<Long, byte[]>> block = new ArrayList<Tuple2<Long, byte[]>>((int) (due - emitted));
+				for (long n = emitted; n < due; n++) {
+					block.add(new Tuple2<Long, byte[]>(from + n * 1000 / rate, records[next]));
+					next = (next + 1 == records.length) ? 0 : next + 1;
+				}
+				store(block.iterator());
+				emitted = due;
+			}
+			return next;
+		}
+	}
+
+	/*
+	 * Transactions of source as Kafka JSON value bytes, in replay order
+	 */
+	static byte[][] loadTransactions(String source) throws IOException {
+
+		if (source.equals(SOURCE_SYNTHETIC)) {
+			return SyntheticData.get().jsonBytes;
+		}
+
+		List<String[]> rows = readCsv(source);
+		byte[][] records = new byte[rows.size()][];
+		for (int i = 0; i < records.length; i++) {
+			String[] row = rows.get(i);
+			String json = "{\"card_id\":" + row[0] + ",\"member_id\":" + row[1] + ",\"amount\":" + row[2]
+					+ ",\"postcode\":" + row[3] + ",\"pos_id\":" + row[4] + ",\"transaction_dt\":\"" + row[5] + "\"}";
+			records[i] = json.getBytes(StandardCharsets.UTF_8);
+		}
+		return records;
+	}
+
+	/*
+	 * Lookup profiles of cards of card_transactions.csv : UCL (moving average + 3
+	 * x standard deviation) of last 10 GENUINE amounts, postcode and
+	 * transaction_dt of last GENUINE transaction, and fraud.load.score as score
+	 */
+	static Collection<CardLookupProfile> loadProfiles(String path) throws IOException {
+
+		int score = Integer.getInteger("fraud.load.score", DEFAULT_SCORE);
+		Map<String, List<String[]>> genuineRows = new HashMap<String, List<String[]>>();
+		for (String[] row : readCsv(path)) {
+			if (row.length > 6 && row[6].trim().equals("GENUINE")) {
+				genuineRows.computeIfAbsent(row[0], k -> new ArrayList<String[]>()).add(row);
+			}
+		}
+
+		List<CardLookupProfile> profiles = new ArrayList<CardLookupProfile>(genuineRows.size());
+		for (Map.Entry<String, List<String[]>> entry : genuineRows.entrySet()) {
+
+			List<String[]> rows = entry.getValue();
+			rows.sort(Comparator.comparingLong(row -> parseInputDate(row[5])));
+			List<String[]> last = rows.subList(Math.max(0, rows.size() - 10), rows.size());
+
+			double sum = 0d;
+			for (String[] row : last) {
+				sum += Double.parseDouble(row[2]);
+			}
+			double mean = sum / last.size();
+			double squares = 0d;
+			for (String[] row : last) {
+				double diff = Double.parseDouble(row[2]) - mean;
+				squares += diff * diff;
+			}
+			double ucl = mean + 3 * Math.sqrt(squares / last.size());
+
+			String[] latest = last.get(last.size() - 1);
+			profiles.add(new CardLookupProfile(entry.getKey(), ucl, score, latest[3], parseInputDate(latest[5])));
+		}
+		return profiles;
+	}
+
+	/*
+	 * Rows of card_transactions.csv, header line skipped
+	 */
+	private static List<String[]> readCsv(String path) throws IOException {
+		List<String[]> rows = new ArrayList<String[]>();
+		try (BufferedReader reader = new BufferedReader(new FileReader(path))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] fields = line.split(",");
+				if (fields.length < 6 || fields[0].trim().equalsIgnoreCase("card_id")) {
+					continue;
+				}
+				for (int i = 0; i < fields.length; i++) {
+					fields[i] = fields[i].trim();
+				}
+				rows.add(fields);
+			}
+		}
+		return rows;
+	}
+
+	private static long parseInputDate(String text) {
+		return LocalDateTime.parse(text, TransactionTime.INPUT_FORMAT).atZone(TransactionTime.ZONE).toInstant()
+				.toEpochMilli();
+	}
+}
@@ -0,0 +1,125 @@
+package com.upgrad.creditcardfrauddetection;
+
+import java.io.IOException;
+
+import org.apache.hadoop.hbase.client.Admin;
+import org.apache.hadoop.hbase.client.ColumnFamilyDescriptorBuilder;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.client.TableDescriptorBuilder;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/*
+ * LookupRefreshMarker records when lookup_data_hive table was last refreshed
+ * by lookupDataRefresh.hql. Oozie workflow runs main method of this class right
+ * after the refresh, and CardProfileCache on every executor polls the marker to
+ * drop cached profiles which the refresh has made stale.
+ *
+ * Usage : LookupRefreshMarker [host server IP]
+ */
+public class LookupRefreshMarker {
+
+	public static void main(String[] args) throws Exception {
+
+		/*
+		 * Check if 1 argument is passed to the program
+		 */
+		if (args.length != 1) {
+			System.out.println("Please enter 1st argument as host server IP");
+			return;
+		}
+
+		CreditCardFraudDetection.hostServerIP = args[0];
+
+		long refreshedAt = System.currentTimeMillis();
+		mark(refreshedAt);
+
+		System.out.println("Lookup refresh marker set to : "
+				+ TransactionTime.format(refreshedAt));
+
+		HBaseConnectionHolder.close();
+	}
+
+	/*
+	 * mark method stores refresh time in marker table, creating table if it does
+	 * not exist yet
+	 */
+	static void mark(long refreshedAt) throws IOException {
+		writeLong(HBaseSchema.REFRESHED_AT, refreshedAt);
+	}
+
+	/*
+	 * read method returns time of last refresh, or 0 if lookup table was never
+	 * marked as refreshed
+	 */
+	static long read() throws IOException {
+		return readLong(HBaseSchema.REFRESHED_AT);
+	}
+
+	/*
+	 * Watermark of IncrementalLookupRefresh, i.e. cell time up to which changes
+	 * of card_transactions_hive were applied to lookup table, 0 if never run
+	 */
+	static long readWatermark() throws IOException {
+		return readLong(HBaseSchema.INCREMENTAL_WATERMARK);
+	}
+
+	static void writeWatermark(long watermark) throws IOException {
+		writeLong(HBaseSchema.INCREMENTAL_WATERMARK, watermark);
+	}
+
+	/*
+	 * Checksum of member_score import last applied by IncrementalLookupRefresh,
+	 * null if never run
+	 */
+	static byte[] readScoreChecksum() throws IOException {
+		return readBytes(HBaseSchema.MEMBER_SCORE_CHECKSUM);
+	}
+
+	static void writeScoreChecksum(byte[] checksum) throws IOException {
+		writeBytes(HBaseSchema.MEMBER_SCORE_CHECKSUM, checksum);
+	}
+
+	private static void writeLong(byte[] qualifier, long value) throws IOException {
+		writeBytes(qualifier, Bytes.toBytes(value));
+	}
+
+	private static void writeBytes(byte[] qualifier, byte[] value) throws IOException {
+
+		if (!HBaseConnectionHolder.tableExists(HBaseSchema.REFRESH_MARKER_TABLE)) {
+			try (Admin admin = HBaseConnectionHolder.getAdmin()) {
+				admin.createTable(TableDescriptorBuilder.newBuilder(HBaseSchema.REFRESH_MARKER_TABLE)
+						.setColumnFamily(ColumnFamilyDescriptorBuilder.of(HBaseSchema.REFRESH_MARKER_FAMILY)).build());
+			}
+		}
+
+		Put p = new Put(HBaseSchema.REFRESH_MARKER_ROW);
+		p.addColumn(HBaseSchema.REFRESH_MARKER_FAMILY, qualifier, value);
+
+		try (Table htable = HBaseConnectionHolder.getTable(HBaseSchema.REFRESH_MARKER_TABLE)) {
+			htable.put(p);
+		}
+	}
+
+	private static long readLong(byte[] qualifier) throws IOException {
+		byte[] value = readBytes(qualifier);
+		return (value != null) ? Bytes.toLong(value) : 0L;
+	}
+
+	private static byte[] readBytes(byte[] qualifier) throws IOException {
+
+		if (!HBaseConnectionHolder.tableExists(HBaseSchema.REFRESH_MARKER_TABLE)) {
+			return null;
+		}
+
+		Get get = new Get(HBaseSchema.REFRESH_MARKER_ROW);
+		get.addColumn(HBaseSchema.REFRESH_MARKER_FAMILY, qualifier);
+
+		try (Table htable = HBaseConnectionHolder.getTable(HBaseSchema.REFRESH_MARKER_TABLE)) {
+			Result result = htable.get(get);
+			return result.getValue(HBaseSchema.REFRESH_MARKER_FAMILY, qualifier);
+		}
+	}
+}
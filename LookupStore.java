@@ -0,0 +1,25 @@
+package com.upgrad.creditcardfrauddetection;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+
+/*
+ * LookupStore is the source of lookup profiles (ucl, score, last postcode and
+ * last transaction date) of cards, read by classification. HBaseLookupStore
+ * reads lookup_data_hive, InMemoryFraudStore keeps profiles in memory. Store
+ * used by this JVM is selected by FraudStores.
+ */
+public interface LookupStore {
+
+	/*
+	 * Profile of a card, empty profile if card has none
+	 */
+	CardLookupProfile getProfile(String cardID) throws IOException;
+
+	/*
+	 * Profiles of all given cards keyed by Card ID, empty profile for cards which
+	 * have none
+	 */
+	Map<String, CardLookupProfile> getProfiles(Collection<String> cardIDs) throws IOException;
+}
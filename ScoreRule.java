@@ -0,0 +1,35 @@
+package com.upgrad.creditcardfrauddetection;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/*
+ * Credit Score Validation rule : if member score is less than 200, then member
+ * could be a defaulter and possible case of fraud
+ */
+final class ScoreRule implements FraudRule {
+
+	static final String NAME = "score";
+
+	static final int MIN_SCORE = 200;
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public String getDescription() {
+		return "Credit Score Validation rule : Score >= " + MIN_SCORE;
+	}
+
+	@Override
+	public Set<Input> getInputs() {
+		return EnumSet.of(Input.SCORE);
+	}
+
+	@Override
+	public boolean evaluate(CreditCardFraudDetection transaction, CardLookupProfile profile) {
+		return profile.getScore() >= MIN_SCORE;
+	}
+}
@@ -0,0 +1,185 @@
+package com.upgrad.creditcardfrauddetection;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/*
+ * Zip Code Distance Validation rule : if speed of travel based on distance
+ * between postcode of current and last transaction, is more than 1km in 4sec =
+ * 0.25 km/sec then possible case of fraud.
+ *
+ * Rule is applied as threshold test : speed is within limit if distance is at
+ * most MAX_SPEED_KM_PER_SEC x time difference. DistanceUtility decides this
+ * from precomputed reach of both post codes or from approximate distance for
+ * most transactions and computes exact distance only close to the limit. Path
+ * which decided the rule is kept in speed_rule_path of transaction.
+ */
+final class SpeedRule implements FraudRule {
+
+	static final String NAME = "speed";
+
+	/*
+	 * Speed limit of Zip Code Distance Validation rule, 1km in 4sec
+	 */
+	static final double MAX_SPEED_KM_PER_SEC = 0.25;
+
+	/*
+	 * Paths of speed rule decided before DistanceUtility is consulted. Other paths
+	 * are names of DistanceUtility.DistanceCheck.
+	 */
+	static final String SPEED_PATH_SAME_POSTCODE = "SAME_POSTCODE";
+	static final String SPEED_PATH_UNAVAILABLE = "UNAVAILABLE";
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public String getDescription() {
+		return "Zip Code Distance Validation rule : Speed (km/sec) <= " + MAX_SPEED_KM_PER_SEC;
+	}
+
+	@Override
+	public Set<Input> getInputs() {
+		return EnumSet.of(Input.POSTCODE, Input.TRANSACTION_DT, Input.LAST_POSTCODE, Input.LAST_TRANSACTION_DT,
+				Input.ZIP_CODE_DISTANCE);
+	}
+
+	@Override
+	public boolean evaluate(CreditCardFraudDetection transaction, CardLookupProfile profile) {
+		long start = System.nanoTime();
+		boolean passed = checkSpeed(transaction, profile);
+		FraudMetrics.record(FraudMetrics.Stage.SPEED_CHECK, start);
+		return passed;
+	}
+
+	/*
+	 * checkSpeed method validates speed of travel in km/sec based on distance
+	 * between post code of current and last transaction. This method makes of
+	 * DistanceUtility class provided. Last post code and transaction date are
+	 * taken from lookup profile already fetched for current Card ID.
+	 */
+	private static boolean checkSpeed(CreditCardFraudDetection transaction, CardLookupProfile profile) {
+
+		long timeDifference = 0L;
+		long transactionDt = transaction.getTransactionMillis();
+
+		try {
+
+			/*
+			 * Get zip code index of DistanceUtility class, loaded once per JVM and shared
+			 * by all transactions
+			 */
+			DistanceUtility distUtil = DistanceUtility.getInstance();
+
+			/*
+			 * Get last post code of Card ID from lookup profile
+			 */
+			String lastPostCode = profile.getPostcode();
+
+			/*
+			 * Get last transaction_dt of Card ID from lookup profile
+			 */
+			long lastTransactionDt = profile.getTransactionMillis();
+
+			/*
+			 * Print last and current post code and transaction date
+			 */
+			if (DecisionLog.VERBOSE) {
+				System.out.println("\nLast Post Code for Card ID of current transaction is : " + lastPostCode);
+				System.out.println(
+						"\nCurrent Post Code for Card ID of current transaction is : " + transaction.getPostcode());
+				System.out.println("\nLast Transaction Date for Card ID of current transaction is : "
+						+ TransactionTime.format(lastTransactionDt));
+				System.out.println("\nCurrent Transaction Date for Card ID of current transaction is : "
+						+ TransactionTime.format(transactionDt));
+			}
+
+			/*
+			 * Speed can not be calculated without both transaction dates
+			 */
+			if (lastTransactionDt == TransactionTime.NONE || transactionDt == TransactionTime.NONE) {
+				throw new IllegalStateException(
+						"Transaction date not available for Card ID : " + transaction.getCard_id());
+			}
+
+			/*
+			 * Time difference between 2 transaction dates is calculated as below. The
+			 * difference is returned in milliseconds so dividing by 1000 to get time in
+			 * seconds. For many transactions, the incoming transaction date is less than
+			 * last transaction date stored in lookup table so using abs method.
+			 */
+			timeDifference = (java.lang.Math.abs(transactionDt - lastTransactionDt)) / 1000;
+			if (DecisionLog.VERBOSE) {
+				System.out.println("\nAbsolute Time Difference between current and last transaction (in seconds) is : "
+						+ timeDifference);
+			}
+
+			/*
+			 * At one instance, time difference was zero (2018-06-21 15:29:59) and last and
+			 * current post code (55311) were same, distance utility returned non zero value
+			 * (9.493073054631141E-5) which is quite small as such but still a non zero
+			 * value was returned, due to which speed came out to be infinity for card_id =
+			 * '4838289241690162'. DistanceUtility now returns exactly 0 for same post code,
+			 * but same post code needs no distance at all, so if last and current post code
+			 * are same then consider speed as 0.
+			 */
+			if (lastPostCode.equals(transaction.getPostcode())) {
+				if (DecisionLog.VERBOSE) {
+					System.out.println(
+							"\nSince Last Post Code and Current Post Code are same, so distance is 0 and so considering speed as 0");
+				}
+				transaction.setSpeed_rule_path(SPEED_PATH_SAME_POSTCODE);
+				return true;
+			}
+
+			/*
+			 * Maximum distance which could be travelled in time difference without
+			 * exceeding speed limit. Distance is in kilometers.
+			 */
+			double distanceLimit = MAX_SPEED_KM_PER_SEC * timeDifference;
+			DistanceUtility.DistanceCheck check = distUtil.checkDistanceWithin(lastPostCode,
+					transaction.getPostcode(), distanceLimit);
+			transaction.setSpeed_rule_path(check.name());
+
+			if (DecisionLog.VERBOSE) {
+				System.out.println("\nDistance between current and last postcode checked against " + distanceLimit
+						+ " km (" + MAX_SPEED_KM_PER_SEC + " km/second x time) through path : " + check);
+			}
+
+			/*
+			 * Exact distance was computed (and cached) only in ambiguous band, so print
+			 * speed for it
+			 */
+			if (DecisionLog.VERBOSE && check.isExact()) {
+				double distance = distUtil.getDistanceViaZipCode(lastPostCode, transaction.getPostcode());
+				System.out.println(
+						"\nDistance (returned by DistanceUtility) between current and last postcode (in km) is : "
+								+ distance);
+				System.out.println("\nSpeed (Distance / Time) : " + (distance / timeDifference) + " km/second ");
+			}
+
+			return check.isWithin();
+
+		} catch (IllegalStateException e) {
+
+			/*
+			 * Missing transaction date is expected for new cards, UNAVAILABLE path is kept
+			 * in decision record
+			 */
+			if (DecisionLog.VERBOSE) {
+				e.printStackTrace();
+			}
+		} catch (Exception e) {
+
+			e.printStackTrace();
+		}
+
+		/*
+		 * Same as before, speed is considered 0 if it could not be calculated
+		 */
+		transaction.setSpeed_rule_path(SPEED_PATH_UNAVAILABLE);
+		return true;
+	}
+}
@@ -0,0 +1,22 @@
+package com.upgrad.creditcardfrauddetection;
+
+/*
+ * JMX view of latency histogram of one stage of fraud pipeline (see
+ * FraudMetrics). Latencies are in microseconds.
+ */
+public interface StageLatencyMXBean {
+
+	long getCount();
+
+	double getMeanMicros();
+
+	double getP50Micros();
+
+	double getP90Micros();
+
+	double getP99Micros();
+
+	double getP999Micros();
+
+	double getMaxMicros();
+}
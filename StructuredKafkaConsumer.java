@@ -0,0 +1,278 @@
+package com.upgrad.creditcardfrauddetection;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.spark.api.java.function.MapFunction;
+import org.apache.spark.api.java.function.VoidFunction2;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Encoder;
+import org.apache.spark.sql.Encoders;
+import org.apache.spark.sql.ForeachWriter;
+import org.apache.spark.sql.SparkSession;
+import org.apache.spark.sql.streaming.StreamingQuery;
+import org.apache.spark.sql.streaming.Trigger;
+
+import scala.Tuple2;
+
+/*
+ * StructuredKafkaConsumer is Spark Structured Streaming counterpart of
+ * KafkaConsumer. It reads same Kafka topic as a typed Dataset of transactions,
+ * decoded from Kafka value bytes by TransactionDeserializer, and classifies
+ * them with same CreditCardFraudDetection rules, either:
+ *
+ * 1. microbatch trigger : each micro-batch goes through foreachBatch sink,
+ * which classifies and writes to HBase per partition (FraudDetectionPartition).
+ * Interval 0 starts next micro-batch as soon as previous one is done, instead
+ * of fixed 1 second batches of KafkaConsumer.
+ *
+ * 2. continuous trigger : foreachBatch is not supported by continuous
+ * processing, so each transaction goes through a ForeachWriter which classifies
+ * and writes it as soon as it is read (FraudDetection). Interval is epoch
+ * checkpoint interval, not a batch interval.
+ *
+ * Swipe-to-verdict latency is measured from Kafka timestamp of each record to
+ * time its classified transaction was written to HBase, and printed per batch
+ * (microbatch) or per partition epoch (continuous), so it can be compared with
+ * DStream path.
+ *
+ * Kafka source needs spark-sql-kafka-0-10 package at runtime, e.g.
+ * spark-submit --packages org.apache.spark:spark-sql-kafka-0-10_2.11:<spark
+ * version>
+ */
+public class StructuredKafkaConsumer {
+
+	/*
+	 * Triggers supported by this consumer
+	 */
+	public static final String TRIGGER_MICROBATCH = "microbatch";
+	public static final String TRIGGER_CONTINUOUS = "continuous";
+	public static final List<String> TRIGGERS = Arrays.asList(TRIGGER_MICROBATCH, TRIGGER_CONTINUOUS);
+
+	/*
+	 * Default trigger intervals in milliseconds
+	 */
+	static final long DEFAULT_MICROBATCH_INTERVAL_MILLIS = 0L;
+	static final long DEFAULT_CONTINUOUS_INTERVAL_MILLIS = 1000L;
+
+	public static void main(String[] args) throws Exception {
+
+		/*
+		 * Check if 1 to 3 arguments are passed to the program
+		 */
+		if (args.length < 1 || args.length > 3) {
+			System.out.println("Please enter 1st argument as host server IP");
+			System.out.println("Optionally enter 2nd argument as trigger, one of : " + TRIGGERS + " (default : "
+					+ TRIGGER_MICROBATCH + ")");
+			System.out.println("Optionally enter 3rd argument as trigger interval in milliseconds (default : "
+					+ DEFAULT_MICROBATCH_INTERVAL_MILLIS + " for " + TRIGGER_MICROBATCH + ", "
+					+ DEFAULT_CONTINUOUS_INTERVAL_MILLIS + " for " + TRIGGER_CONTINUOUS + ")");
+			return;
+		}
+
+		final String trigger = (args.length >= 2) ? args[1] : TRIGGER_MICROBATCH;
+		if (!TRIGGERS.contains(trigger)) {
+			System.out.println("Unknown trigger : " + trigger);
+			return;
+		}
+		final boolean continuous = trigger.equals(TRIGGER_CONTINUOUS);
+		final long intervalMillis = (args.length == 3) ? Long.parseLong(args[2])
+				: (continuous ? DEFAULT_CONTINUOUS_INTERVAL_MILLIS : DEFAULT_MICROBATCH_INTERVAL_MILLIS);
+		System.out.println("Using trigger : " + trigger + " : interval (ms) : " + intervalMillis);
+
+		/*
+		 * Expose metrics of driver through JMX and HTTP
+		 */
+		FraudMetrics.getInstance();
+
+		/*
+		 * Set Logger to OFF
+		 */
+		Logger.getLogger("org").setLevel(Level.OFF);
+		Logger.getLogger("akka").setLevel(Level.OFF);
+
+		/*
+		 * Set Spark Session
+		 */
+		SparkSession spark = SparkSession.builder().appName("CreditCardFraudDetection").master("local[*]")
+				.getOrCreate();
+
+		/*
+		 * Initialize static variable hostServerIP in CreditCardFraudDetection class,
+		 * and keep a copy to be captured by closures running on executors
+		 */
+		CreditCardFraudDetection.hostServerIP = args[0];
+		final String hostServerIP = args[0];
+
+		/*
+		 * Consume Kafka topic as typed Dataset of transactions along with Kafka
+		 * timestamp of each record
+		 */
+		Encoder<Tuple2<CreditCardFraudDetection, Long>> encoder = Encoders
+				.tuple(Encoders.javaSerialization(CreditCardFraudDetection.class), Encoders.LONG());
+
+		Dataset<Tuple2<CreditCardFraudDetection, Long>> transactions = spark.readStream().format("kafka")
+				.option("kafka.bootstrap.servers", "100.24.223.181:9092")
+				.option("subscribe", "transactions-topic-verified").option("startingOffsets", "earliest").load()
+				.selectExpr("value", "timestamp").as(Encoders.tuple(Encoders.BINARY(), Encoders.TIMESTAMP()))
+				.map((MapFunction<Tuple2<byte[], Timestamp>, Tuple2<CreditCardFraudDetection, Long>>) x -> new Tuple2<CreditCardFraudDetection, Long>(
+						new TransactionDeserializer().deserialize(null, x._1()), x._2().getTime()), encoder);
+
+		String checkpointDir = System.getProperty("fraud.checkpoint.dir", "checkpoint") + "/structured-" + trigger;
+
+		StreamingQuery query;
+		if (continuous) {
+			query = transactions.writeStream().foreach(new TransactionWriter(hostServerIP))
+					.trigger(Trigger.Continuous(intervalMillis)).option("checkpointLocation", checkpointDir).start();
+		} else {
+			query = transactions.writeStream()
+					.foreachBatch((VoidFunction2<Dataset<Tuple2<CreditCardFraudDetection, Long>>, Long>) (batch,
+							batchId) -> processBatch(batch, batchId, hostServerIP))
+					.trigger(Trigger.ProcessingTime(intervalMillis)).option("checkpointLocation", checkpointDir)
+					.start();
+		}
+
+		/*
+		 * Print current time stamp before starting
+		 */
+		System.out.println("\nStart Time : " + TransactionTime.now() + "\n");
+
+		/*
+		 * Await Termination to respond to Ctrl+C
+		 */
+		query.awaitTermination();
+
+		/*
+		 * Print current time stamp before closing
+		 */
+		System.out.println("\nEnd Time : " + TransactionTime.now() + "\n");
+
+		/*
+		 * Close Spark Session and HBase Connection
+		 */
+		spark.stop();
+		CreditCardFraudDetection.closeConnection();
+	}
+
+	/*
+	 * processBatch method is the foreachBatch sink of microbatch trigger. Each
+	 * partition of the batch is classified and written through
+	 * FraudDetectionPartition and returns latencies of its transactions, so batch
+	 * is read from Kafka once and latency is summarised on driver.
+	 */
+	private static void processBatch(Dataset<Tuple2<CreditCardFraudDetection, Long>> batch, long batchId,
+			String hostServerIP) {
+
+		List<long[]> partitionLatencies = batch.javaRDD().mapPartitions(x -> {
+			CreditCardFraudDetection.initHostServerIP(hostServerIP);
+
+			List<CreditCardFraudDetection> records = new ArrayList<CreditCardFraudDetection>();
+			List<Long> timestamps = new ArrayList<Long>();
+			while (x.hasNext()) {
+				Tuple2<CreditCardFraudDetection, Long> record = x.next();
+				records.add(record._1());
+				timestamps.add(record._2());
+			}
+			if (records.isEmpty()) {
+				return Collections.<long[]>emptyIterator();
+			}
+
+			CreditCardFraudDetection.FraudDetectionPartition(records.iterator());
+
+			long writtenAt = System.currentTimeMillis();
+			long[] latencies = new long[timestamps.size()];
+			for (int i = 0; i < latencies.length; i++) {
+				latencies[i] = writtenAt - timestamps.get(i);
+			}
+			return Collections.singletonList(latencies).iterator();
+		}).collect();
+
+		int count = 0;
+		for (long[] latencies : partitionLatencies) {
+			count += latencies.length;
+		}
+		long[] latencies = new long[count];
+		int offset = 0;
+		for (long[] partition : partitionLatencies) {
+			System.arraycopy(partition, 0, latencies, offset, partition.length);
+			offset += partition.length;
+		}
+
+		FraudMetrics.recordBatch(latencies.length);
+		System.out.println("\nBatch : " + batchId + " : " + latencySummary(latencies) + "\n");
+	}
+
+	/*
+	 * latencySummary method describes count and average / p50 / p99 / max of
+	 * swipe-to-verdict latencies. Input array is sorted in place.
+	 */
+	static String latencySummary(long[] latencies) {
+
+		if (latencies.length == 0) {
+			return "Transactions Processed : 0";
+		}
+
+		Arrays.sort(latencies);
+		long sum = 0L;
+		for (long latency : latencies) {
+			sum += latency;
+		}
+		return "Transactions Processed : " + latencies.length + " : Swipe-to-Verdict Latency (ms) Avg / p50 / p99 / Max : "
+				+ (sum / latencies.length) + " / " + LatencyHistogram.percentile(latencies, 0.50) + " / "
+				+ LatencyHistogram.percentile(latencies, 0.99) + " / " + latencies[latencies.length - 1];
+	}
+
+	/*
+	 * TransactionWriter is the ForeachWriter sink of continuous trigger. Each
+	 * transaction is classified and written on arrival, and latencies are
+	 * summarised when an epoch of a partition is closed.
+	 */
+	@SuppressWarnings("serial")
+	static class TransactionWriter extends ForeachWriter<Tuple2<CreditCardFraudDetection, Long>> {
+
+		private final String hostServerIP;
+		private transient List<Long> latencies;
+		private transient long partitionId;
+		private transient long epochId;
+
+		TransactionWriter(String hostServerIP) {
+			this.hostServerIP = hostServerIP;
+		}
+
+		@Override
+		public boolean open(long partitionId, long epochId) {
+			CreditCardFraudDetection.initHostServerIP(hostServerIP);
+			this.latencies = new ArrayList<Long>();
+			this.partitionId = partitionId;
+			this.epochId = epochId;
+			return true;
+		}
+
+		@Override
+		public void process(Tuple2<CreditCardFraudDetection, Long> record) {
+			CreditCardFraudDetection transaction = record._1();
+			transaction.FraudDetection(transaction);
+			latencies.add(System.currentTimeMillis() - record._2());
+		}
+
+		@Override
+		public void close(Throwable errorOrNull) {
+			if (errorOrNull != null) {
+				errorOrNull.printStackTrace();
+			}
+			if (latencies != null && !latencies.isEmpty()) {
+				long[] values = new long[latencies.size()];
+				for (int i = 0; i < values.length; i++) {
+					values[i] = latencies.get(i);
+				}
+				System.out.println("\nEpoch : " + epochId + " : Partition : " + partitionId + " : "
+						+ latencySummary(values) + "\n");
+			}
+		}
+	}
+}
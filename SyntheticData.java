@@ -0,0 +1,202 @@
+package com.upgrad.creditcardfrauddetection;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/*
+ * SyntheticData is the fixed data set of benchmarks (benchmarks module) and
+ * LoadHarness, generated from a fixed seed so every run and every commit
+ * measures same input.
+ *
+ * Zip codes are laid out like US ones : ZIP_CODES zip codes in METROS metro
+ * areas, consecutive zip codes belong to same metro and lie within a few tens of
+ * km of its center. Each card has a home metro. Each transaction of a card is
+ * at same postcode as its previous one (50 %), at another postcode of same
+ * metro (35 %) or anywhere (15 %), after an exponentially distributed gap
+ * (mean 6 hours, 10 % within minutes), so speed rule sees same postcode, near
+ * and far paths in realistic shares.
+ *
+ * Lookup profiles of cards are as lookup_data_hive would hold them before
+ * first transaction of data set.
+ */
+final class SyntheticData {
+
+	static final long SEED = 20180611L;
+
+	static final int ZIP_CODES = 40000;
+	static final int METROS = 200;
+	static final int CARDS = 5000;
+
+	/*
+	 * Power of 2, so benchmarks cycle through transactions with a mask
+	 */
+	static final int TRANSACTIONS = 1 << 16;
+
+	private static final long START_MILLIS = LocalDateTime.of(2018, 1, 1, 0, 0).atZone(TransactionTime.ZONE)
+			.toInstant().toEpochMilli();
+
+	private static SyntheticData instance = null;
+
+	final int[] zipCodes = new int[ZIP_CODES];
+	final double[] latitudes = new double[ZIP_CODES];
+	final double[] longitudes = new double[ZIP_CODES];
+
+	final String[] cardIDs = new String[CARDS];
+	final Map<String, CardLookupProfile> profiles = new HashMap<String, CardLookupProfile>();
+
+	/*
+	 * Transactions in arrival order, as Kafka JSON and as fields
+	 */
+	final String[] json = new String[TRANSACTIONS];
+	final byte[][] jsonBytes = new byte[TRANSACTIONS][];
+	final String[] postcodes = new String[TRANSACTIONS];
+	final long[] transactionMillis = new long[TRANSACTIONS];
+
+	/*
+	 * Postcode and time of previous transaction of same card, for distance
+	 * benchmarks
+	 */
+	final String[] previousPostcodes = new String[TRANSACTIONS];
+	final long[] previousMillis = new long[TRANSACTIONS];
+
+	/*
+	 * transaction_dt of transactions in HBase format, for date benchmarks
+	 */
+	final String[] hbaseDates = new String[TRANSACTIONS];
+
+	private SyntheticData() {
+		Random random = new Random(SEED);
+		generateZipCodes(random);
+		generateTransactions(random);
+	}
+
+	/*
+	 * Data set shared by all benchmarks of a JVM
+	 */
+	static synchronized SyntheticData get() {
+		if (instance == null) {
+			instance = new SyntheticData();
+		}
+		return instance;
+	}
+
+	private void generateZipCodes(Random random) {
+
+		double[] metroLatitudes = new double[METROS];
+		double[] metroLongitudes = new double[METROS];
+		for (int m = 0; m < METROS; m++) {
+			metroLatitudes[m] = 26 + random.nextDouble() * 22;
+			metroLongitudes[m] = -122 + random.nextDouble() * 52;
+		}
+
+		for (int i = 0; i < ZIP_CODES; i++) {
+			int metro = metroOf(i);
+			zipCodes[i] = 1001 + i * 2;
+			latitudes[i] = metroLatitudes[metro] + random.nextGaussian() * 0.2;
+			longitudes[i] = metroLongitudes[metro] + random.nextGaussian() * 0.2;
+		}
+	}
+
+	private static int metroOf(int zipIndex) {
+		return (int) ((long) zipIndex * METROS / ZIP_CODES);
+	}
+
+	private int randomZipOfMetro(Random random, int metro) {
+		int first = (int) Math.ceil((double) metro * ZIP_CODES / METROS);
+		int last = (int) Math.ceil((double) (metro + 1) * ZIP_CODES / METROS);
+		return first + random.nextInt(last - first);
+	}
+
+	private void generateTransactions(Random random) {
+
+		int[] lastZip = new int[CARDS];
+		long[] lastMillis = new long[CARDS];
+		double[] amountScale = new double[CARDS];
+		String[] memberIDs = new String[CARDS];
+
+		for (int c = 0; c < CARDS; c++) {
+			cardIDs[c] = Long.toString(340000000000000L + random.nextInt(1000000000) * 997L + c);
+			memberIDs[c] = Long.toString(10000000000L + random.nextInt(900000000) * 97L + c);
+			lastZip[c] = randomZipOfMetro(random, random.nextInt(METROS));
+			lastMillis[c] = START_MILLIS;
+			amountScale[c] = 8 + random.nextGaussian();
+
+			double ucl = Math.round(Math.exp(amountScale[c] + 2.2) * 100) / 100d;
+			int score = 150 + random.nextInt(750);
+			profiles.put(cardIDs[c], new CardLookupProfile(cardIDs[c], ucl, score, Integer.toString(zipCodes[lastZip[c]]),
+					START_MILLIS));
+		}
+
+		for (int i = 0; i < TRANSACTIONS; i++) {
+
+			/*
+			 * Skewed towards low card indexes, so some cards swipe often
+			 */
+			double r = random.nextDouble();
+			int c = (int) (CARDS * r * r);
+
+			int zip;
+			double kind = random.nextDouble();
+			if (kind < 0.50) {
+				zip = lastZip[c];
+			} else if (kind < 0.85) {
+				zip = randomZipOfMetro(random, metroOf(lastZip[c]));
+			} else {
+				zip = random.nextInt(ZIP_CODES);
+			}
+
+			double meanGapMillis = (random.nextDouble() < 0.1) ? 5 * 60 * 1000d : 6 * 60 * 60 * 1000d;
+			long millis = lastMillis[c] + 1000L * (long) (-Math.log(1 - random.nextDouble()) * meanGapMillis / 1000);
+			double amount = Math.round(Math.exp(amountScale[c] + random.nextGaussian()));
+
+			previousPostcodes[i] = Integer.toString(zipCodes[lastZip[c]]);
+			previousMillis[i] = lastMillis[c];
+			postcodes[i] = Integer.toString(zipCodes[zip]);
+			transactionMillis[i] = millis;
+			hbaseDates[i] = TransactionTime.format(millis);
+
+			json[i] = "{\"card_id\":" + cardIDs[c] + ",\"member_id\":" + memberIDs[c] + ",\"amount\":"
+					+ (long) amount + ",\"pos_id\":" + (100000000000000L + (long) zip * 31 + random.nextInt(31))
+					+ ",\"postcode\":" + postcodes[i] + ",\"transaction_dt\":\"" + TransactionTime.formatInput(millis)
+					+ "\"}";
+			jsonBytes[i] = json[i].getBytes(java.nio.charset.StandardCharsets.UTF_8);
+
+			lastZip[c] = zip;
+			lastMillis[c] = millis;
+		}
+	}
+
+	/*
+	 * Write zip codes in zipCodePosId.csv format (zip code, lat, lon, city,
+	 * state, post id)
+	 */
+	void writeZipCodeCsv(File file) throws IOException {
+		try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+			for (int i = 0; i < ZIP_CODES; i++) {
+				writer.write(String.format(Locale.ROOT, "%05d,%.6f,%.6f,City%d,ST,%d", zipCodes[i], latitudes[i],
+						longitudes[i], metroOf(i), 1000 + i));
+				writer.newLine();
+			}
+		}
+	}
+
+	/*
+	 * Directory holding zipCodePosId.csv of data set, usable as
+	 * fraud.zipcode.dir
+	 */
+	File writeZipCodeDirectory() throws IOException {
+		File dir = java.nio.file.Files.createTempDirectory("fraud-bench-zip").toFile();
+		dir.deleteOnExit();
+		File csv = new File(dir, DistanceUtility.ZIP_CODE_CSV_FILE);
+		csv.deleteOnExit();
+		writeZipCodeCsv(csv);
+		return dir;
+	}
+}
@@ -0,0 +1,162 @@
+package com.upgrad.creditcardfrauddetection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * ThreadedFraudDetection runs per record FraudDetection of all transactions of
+ * a partition, either one after other on task thread (record mode) or on one
+ * thread per transaction (threaded mode), so blocking HBase calls of different
+ * transactions overlap without changing rule code.
+ *
+ * Threaded mode uses virtual threads (Executors.newVirtualThreadPerTaskExecutor,
+ * looked up by reflection as it exists from Java 21 on). On older JVMs it falls
+ * back to a pool of fraud.threaded.concurrency platform threads. Transactions
+ * running at once are capped by a semaphore of fraud.threaded.concurrency
+ * permits (default 64), which bounds load on HBase. Transactions of same card
+ * are chained one after other, so they are classified in arrival order, each
+ * seeing lookup update of previous GENUINE one.
+ *
+ * Both modes print throughput and completion latency of each transaction,
+ * measured from start of partition, so they can be compared directly.
+ */
+final class ThreadedFraudDetection {
+
+	static final int DEFAULT_CONCURRENCY = 64;
+
+	private static final CompletableFuture<Void> DONE = CompletableFuture.completedFuture(null);
+
+	private ThreadedFraudDetection() {
+	}
+
+	/*
+	 * Process all transactions of a partition, on task thread if threaded is
+	 * false, returns once all are processed
+	 */
+	static void processPartition(Iterator<CreditCardFraudDetection> partition, boolean threaded) throws Exception {
+
+		List<CreditCardFraudDetection> transactions = new ArrayList<CreditCardFraudDetection>();
+		partition.forEachRemaining(transactions::add);
+		if (transactions.isEmpty()) {
+			return;
+		}
+
+		long[] latencies = new long[transactions.size()];
+		long start = System.nanoTime();
+		String executorName;
+
+		if (!threaded) {
+			executorName = "sequential";
+			for (int i = 0; i < transactions.size(); i++) {
+				CreditCardFraudDetection transaction = transactions.get(i);
+				transaction.FraudDetection(transaction);
+				latencies[i] = System.nanoTime() - start;
+			}
+		} else {
+			int concurrency = Math.max(1, Integer.getInteger("fraud.threaded.concurrency", DEFAULT_CONCURRENCY));
+			ExecutorService executor = newVirtualThreadExecutor();
+			executorName = "virtual threads";
+			if (executor == null) {
+				executor = Executors.newFixedThreadPool(concurrency, r -> {
+					Thread t = new Thread(r, "fraud-detection-worker");
+					t.setDaemon(true);
+					return t;
+				});
+				executorName = "platform threads";
+			}
+
+			try {
+				runThreaded(transactions, executor, new Semaphore(concurrency), latencies, start);
+			} finally {
+				executor.shutdown();
+				executor.awaitTermination(1, TimeUnit.MINUTES);
+			}
+		}
+
+		long elapsed = System.nanoTime() - start;
+		System.out.println("\nPartition Processing (" + executorName + ") : " + summary(latencies, elapsed));
+	}
+
+	/*
+	 * Submit each transaction as its own task, chained on previous task of same
+	 * card, and wait for all of them
+	 */
+	private static void runThreaded(List<CreditCardFraudDetection> transactions, ExecutorService executor,
+			Semaphore permits, long[] latencies, long start) throws InterruptedException {
+
+		Map<String, CompletableFuture<Void>> cardTails = new HashMap<String, CompletableFuture<Void>>();
+		List<CompletableFuture<Void>> tasks = new ArrayList<CompletableFuture<Void>>(transactions.size());
+
+		try {
+			for (int i = 0; i < transactions.size(); i++) {
+				final int index = i;
+				CreditCardFraudDetection transaction = transactions.get(i);
+				String cardID = transaction.getCard_id();
+				CompletableFuture<Void> previous = (cardID == null) ? DONE : cardTails.getOrDefault(cardID, DONE);
+
+				permits.acquire();
+				CompletableFuture<Void> task = previous.thenRunAsync(() -> {
+					try {
+						transaction.FraudDetection(transaction);
+					} finally {
+						latencies[index] = System.nanoTime() - start;
+						permits.release();
+					}
+				}, executor).exceptionally(e -> {
+					e.printStackTrace();
+					return null;
+				});
+
+				tasks.add(task);
+				if (cardID != null) {
+					cardTails.put(cardID, task);
+				}
+			}
+		} finally {
+			CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0])).join();
+		}
+	}
+
+	/*
+	 * Executor starting a virtual thread per task, or null if JVM has none
+	 */
+	static ExecutorService newVirtualThreadExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+
+	/*
+	 * Count, throughput and average / p50 / p99 / max completion latency.
+	 * Latencies are in nanoseconds and sorted in place.
+	 */
+	static String summary(long[] latencies, long elapsedNanos) {
+
+		Arrays.sort(latencies);
+		long sum = 0L;
+		for (long latency : latencies) {
+			sum += latency;
+		}
+		double seconds = elapsedNanos / 1e9;
+		return "Transactions : " + latencies.length + " : Throughput (tx/sec) : "
+				+ String.format("%.1f", latencies.length / seconds) + " : Completion Latency (ms) Avg / p50 / p99 / Max : "
+				+ millis(sum / latencies.length) + " / " + millis(LatencyHistogram.percentile(latencies, 0.50))
+				+ " / " + millis(LatencyHistogram.percentile(latencies, 0.99)) + " / "
+				+ millis(latencies[latencies.length - 1]);
+	}
+
+	private static String millis(long nanos) {
+		return String.format("%.1f", nanos / 1e6);
+	}
+}
@@ -0,0 +1,507 @@
+package com.upgrad.creditcardfrauddetection;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneRules;
+
+/*
+ * TransactionDecoder parses a transaction JSON record of the fixed schema sent
+ * by POS (card_id, member_id, amount, postcode, pos_id, transaction_dt) straight
+ * from UTF-8 bytes into a CreditCardFraudDetection, replacing json-simple
+ * JSONParser / JSONObject and SimpleDateFormat of the per record path.
+ *
+ * Only Strings of the six fields are allocated. card_id, member_id, postcode
+ * and pos_id may be JSON numbers or strings, and are kept as their text, same
+ * as String.valueOf of json-simple values. amount is parsed without
+ * allocation when it has at most 15 significant digits and no exponent, which
+ * is exact (one correctly rounded division), and by Double.parseDouble
+ * otherwise. transaction_dt "dd-MM-yyyy HH:mm:ss" is parsed digit by digit in
+ * default time zone. Unknown fields are skipped, missing fields stay null.
+ *
+ * A record which is not a JSON object of this schema throws
+ * IllegalArgumentException.
+ */
+final class TransactionDecoder {
+
+	private static final byte[] CARD_ID = "card_id".getBytes(StandardCharsets.UTF_8);
+	private static final byte[] MEMBER_ID = "member_id".getBytes(StandardCharsets.UTF_8);
+	private static final byte[] AMOUNT = "amount".getBytes(StandardCharsets.UTF_8);
+	private static final byte[] POSTCODE = "postcode".getBytes(StandardCharsets.UTF_8);
+	private static final byte[] POS_ID = "pos_id".getBytes(StandardCharsets.UTF_8);
+	private static final byte[] TRANSACTION_DT = "transaction_dt".getBytes(StandardCharsets.UTF_8);
+
+	/*
+	 * Powers of ten exactly representable as double
+	 */
+	private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+			1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	/*
+	 * Largest number of significant digits parsed into a long mantissa which is
+	 * still exact as double
+	 */
+	private static final int MAX_FAST_DIGITS = 15;
+
+	/*
+	 * Length of "dd-MM-yyyy HH:mm:ss"
+	 */
+	private static final int DATE_LENGTH = 19;
+
+	private static final ZoneRules ZONE_RULES = TransactionTime.ZONE.getRules();
+
+	private final byte[] data;
+	private final int start;
+	private final int end;
+	private int pos;
+
+	/*
+	 * Start and end of last string or number token read by nextToken
+	 */
+	private int tokenStart;
+	private int tokenEnd;
+	private boolean tokenHasEscapes;
+	private boolean tokenIsString;
+
+	private TransactionDecoder(byte[] data, int offset, int length) {
+		this.data = data;
+		this.start = offset;
+		this.pos = offset;
+		this.end = offset + length;
+	}
+
+	/*
+	 * Decode record into a new CreditCardFraudDetection
+	 */
+	static CreditCardFraudDetection decode(byte[] data) {
+		CreditCardFraudDetection transaction = new CreditCardFraudDetection();
+		decodeInto(data, 0, data.length, transaction);
+		return transaction;
+	}
+
+	/*
+	 * Decode record held in data[offset, offset + length) into fields of target
+	 */
+	static void decodeInto(byte[] data, int offset, int length, CreditCardFraudDetection target) {
+		new TransactionDecoder(data, offset, length).decodeObject(target);
+	}
+
+	private void decodeObject(CreditCardFraudDetection target) {
+
+		String card_id = null;
+		String member_id = null;
+		double amount = 0.0;
+		String postcode = null;
+		String pos_id = null;
+		long transaction_dt = TransactionTime.NONE;
+
+		expect('{');
+		skipWhitespace();
+		if (peek() == '}') {
+			pos++;
+		} else {
+			while (true) {
+				skipWhitespace();
+				expect('"');
+				int nameStart = pos;
+				skipStringBody();
+				int nameEnd = pos - 1;
+				expect(':');
+				skipWhitespace();
+
+				if (nameEquals(nameStart, nameEnd, CARD_ID)) {
+					card_id = readText();
+				} else if (nameEquals(nameStart, nameEnd, MEMBER_ID)) {
+					member_id = readText();
+				} else if (nameEquals(nameStart, nameEnd, AMOUNT)) {
+					amount = readDouble();
+				} else if (nameEquals(nameStart, nameEnd, POSTCODE)) {
+					postcode = readText();
+				} else if (nameEquals(nameStart, nameEnd, POS_ID)) {
+					pos_id = readText();
+				} else if (nameEquals(nameStart, nameEnd, TRANSACTION_DT)) {
+					transaction_dt = readDate();
+				} else {
+					skipValue();
+				}
+
+				skipWhitespace();
+				byte b = next();
+				if (b == '}') {
+					break;
+				}
+				if (b != ',') {
+					throw error("Expected ',' or '}'");
+				}
+			}
+		}
+
+		target.setFields(card_id, member_id, amount, postcode, pos_id, transaction_dt);
+	}
+
+	/*
+	 * Read string or number value as text. JSON null is read as null.
+	 */
+	private String readText() {
+		if (!nextToken()) {
+			return null;
+		}
+		if (tokenHasEscapes) {
+			return unescape(tokenStart, tokenEnd);
+		}
+		return new String(data, tokenStart, tokenEnd - tokenStart, StandardCharsets.UTF_8);
+	}
+
+	/*
+	 * Read number, or string holding a number, as double
+	 */
+	private double readDouble() {
+
+		if (!nextToken()) {
+			return 0.0;
+		}
+
+		int i = tokenStart;
+		boolean negative = false;
+		if (i < tokenEnd && (data[i] == '-' || data[i] == '+')) {
+			negative = data[i] == '-';
+			i++;
+		}
+
+		long mantissa = 0;
+		int digits = 0;
+		int fractionDigits = 0;
+		boolean seenPoint = false;
+		boolean fast = i < tokenEnd;
+
+		for (; i < tokenEnd; i++) {
+			byte b = data[i];
+			if (b >= '0' && b <= '9') {
+				if (mantissa != 0 || b != '0') {
+					digits++;
+				}
+				if (digits > MAX_FAST_DIGITS) {
+					fast = false;
+					break;
+				}
+				mantissa = mantissa * 10 + (b - '0');
+				if (seenPoint) {
+					fractionDigits++;
+				}
+			} else if (b == '.' && !seenPoint) {
+				seenPoint = true;
+			} else {
+				fast = false;
+				break;
+			}
+		}
+
+		if (fast && fractionDigits < POWERS_OF_TEN.length) {
+			double value = (fractionDigits == 0) ? mantissa : mantissa / POWERS_OF_TEN[fractionDigits];
+			return negative ? -value : value;
+		}
+
+		try {
+			return Double.parseDouble(readTokenAsString());
+		} catch (NumberFormatException e) {
+			throw error("Invalid amount");
+		}
+	}
+
+	/*
+	 * Read "dd-MM-yyyy HH:mm:ss" string as epoch milliseconds in default time
+	 * zone
+	 */
+	private long readDate() {
+
+		if (!nextToken()) {
+			return TransactionTime.NONE;
+		}
+		if (!tokenIsString || tokenHasEscapes || tokenEnd - tokenStart != DATE_LENGTH) {
+			throw error("Invalid transaction_dt");
+		}
+
+		int s = tokenStart;
+		if (data[s + 2] != '-' || data[s + 5] != '-' || data[s + 10] != ' ' || data[s + 13] != ':'
+				|| data[s + 16] != ':') {
+			throw error("Invalid transaction_dt");
+		}
+
+		int day = digits(s, 2);
+		int month = digits(s + 3, 2);
+		int year = digits(s + 6, 4);
+		int hour = digits(s + 11, 2);
+		int minute = digits(s + 14, 2);
+		int second = digits(s + 17, 2);
+
+		if (month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month) || hour > 23 || minute > 59
+				|| second > 59) {
+			throw error("Invalid transaction_dt");
+		}
+
+		long localSeconds = daysFromCivil(year, month, day) * 86400L + hour * 3600L + minute * 60L + second;
+
+		/*
+		 * Fixed offset zones (e.g. UTC) need no lookup, other zones resolve DST
+		 * through java.time
+		 */
+		long epochSeconds;
+		if (ZONE_RULES.isFixedOffset()) {
+			epochSeconds = localSeconds - ZONE_RULES.getOffset(Instant.EPOCH).getTotalSeconds();
+		} else {
+			epochSeconds = LocalDateTime.ofEpochSecond(localSeconds, 0, ZoneOffset.UTC).atZone(TransactionTime.ZONE)
+					.toEpochSecond();
+		}
+		return epochSeconds * 1000L;
+	}
+
+	private int digits(int from, int count) {
+		int value = 0;
+		for (int i = from; i < from + count; i++) {
+			int d = data[i] - '0';
+			if (d < 0 || d > 9) {
+				throw error("Invalid transaction_dt");
+			}
+			value = value * 10 + d;
+		}
+		return value;
+	}
+
+	private static int daysInMonth(int year, int month) {
+		switch (month) {
+		case 2:
+			return ((year % 4 == 0 && year % 100 != 0) || year % 400 == 0) ? 29 : 28;
+		case 4:
+		case 6:
+		case 9:
+		case 11:
+			return 30;
+		default:
+			return 31;
+		}
+	}
+
+	/*
+	 * Days since 1970-01-01 of a proleptic Gregorian date
+	 */
+	private static long daysFromCivil(int year, int month, int day) {
+		long y = (month <= 2) ? year - 1 : year;
+		long era = Math.floorDiv(y, 400);
+		long yearOfEra = y - era * 400;
+		long dayOfYear = (153 * (month + ((month > 2) ? -3 : 9)) + 2) / 5 + day - 1;
+		long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		return era * 146097 + dayOfEra - 719468;
+	}
+
+	/*
+	 * Read next value as a string or number token. Returns false for JSON null.
+	 */
+	private boolean nextToken() {
+
+		byte b = peek();
+		if (b == '"') {
+			pos++;
+			tokenStart = pos;
+			tokenHasEscapes = skipStringBody();
+			tokenEnd = pos - 1;
+			tokenIsString = true;
+			return true;
+		}
+		if (b == 'n') {
+			expectLiteral("null");
+			return false;
+		}
+		if (b == '-' || (b >= '0' && b <= '9')) {
+			tokenStart = pos;
+			while (pos < end && isNumberByte(data[pos])) {
+				pos++;
+			}
+			tokenEnd = pos;
+			tokenHasEscapes = false;
+			tokenIsString = false;
+			return true;
+		}
+		throw error("Expected string or number");
+	}
+
+	private static boolean isNumberByte(byte b) {
+		return (b >= '0' && b <= '9') || b == '-' || b == '+' || b == '.' || b == 'e' || b == 'E';
+	}
+
+	private String readTokenAsString() {
+		return tokenHasEscapes ? unescape(tokenStart, tokenEnd)
+				: new String(data, tokenStart, tokenEnd - tokenStart, StandardCharsets.UTF_8);
+	}
+
+	/*
+	 * Move past body of a string whose opening quote was read. Returns true if
+	 * string contains escapes.
+	 */
+	private boolean skipStringBody() {
+		boolean escapes = false;
+		while (pos < end) {
+			byte b = data[pos++];
+			if (b == '"') {
+				return escapes;
+			}
+			if (b == '\\') {
+				escapes = true;
+				pos++;
+			}
+		}
+		throw error("Unterminated string");
+	}
+
+	private String unescape(int from, int to) {
+
+		StringBuilder sb = new StringBuilder(to - from);
+		int runStart = from;
+		int i = from;
+		while (i < to) {
+			if (data[i] != '\\') {
+				i++;
+				continue;
+			}
+			sb.append(new String(data, runStart, i - runStart, StandardCharsets.UTF_8));
+			if (i + 1 >= to) {
+				throw error("Invalid escape");
+			}
+			byte e = data[i + 1];
+			switch (e) {
+			case '"':
+			case '\\':
+			case '/':
+				sb.append((char) e);
+				break;
+			case 'b':
+				sb.append('\b');
+				break;
+			case 'f':
+				sb.append('\f');
+				break;
+			case 'n':
+				sb.append('\n');
+				break;
+			case 'r':
+				sb.append('\r');
+				break;
+			case 't':
+				sb.append('\t');
+				break;
+			case 'u':
+				if (i + 6 > to) {
+					throw error("Invalid escape");
+				}
+				int c = 0;
+				for (int k = i + 2; k < i + 6; k++) {
+					int d = Character.digit(data[k], 16);
+					if (d < 0) {
+						throw error("Invalid escape");
+					}
+					c = (c << 4) | d;
+				}
+				sb.append((char) c);
+				i += 4;
+				break;
+			default:
+				throw error("Invalid escape");
+			}
+			i += 2;
+			runStart = i;
+		}
+		sb.append(new String(data, runStart, to - runStart, StandardCharsets.UTF_8));
+		return sb.toString();
+	}
+
+	/*
+	 * Skip a value of an unknown field, including nested objects and arrays
+	 */
+	private void skipValue() {
+
+		int depth = 0;
+		do {
+			skipWhitespace();
+			byte b = peek();
+			if (b == '{' || b == '[') {
+				pos++;
+				depth++;
+			} else if (b == '}' || b == ']') {
+				pos++;
+				depth--;
+			} else if (b == '"') {
+				pos++;
+				skipStringBody();
+			} else if (b == ',' || b == ':') {
+				pos++;
+			} else if (b == 't') {
+				expectLiteral("true");
+			} else if (b == 'f') {
+				expectLiteral("false");
+			} else if (b == 'n') {
+				expectLiteral("null");
+			} else if (b == '-' || (b >= '0' && b <= '9')) {
+				while (pos < end && isNumberByte(data[pos])) {
+					pos++;
+				}
+			} else {
+				throw error("Unexpected character");
+			}
+		} while (depth > 0);
+	}
+
+	private boolean nameEquals(int from, int to, byte[] name) {
+		if (to - from != name.length) {
+			return false;
+		}
+		for (int i = 0; i < name.length; i++) {
+			if (data[from + i] != name[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void expectLiteral(String literal) {
+		for (int i = 0; i < literal.length(); i++) {
+			if (next() != literal.charAt(i)) {
+				throw error("Expected " + literal);
+			}
+		}
+	}
+
+	private void expect(char c) {
+		skipWhitespace();
+		if (next() != c) {
+			throw error("Expected '" + c + "'");
+		}
+	}
+
+	private void skipWhitespace() {
+		while (pos < end) {
+			byte b = data[pos];
+			if (b != ' ' && b != '\t' && b != '\n' && b != '\r') {
+				return;
+			}
+			pos++;
+		}
+	}
+
+	private byte peek() {
+		if (pos >= end) {
+			throw error("Unexpected end of record");
+		}
+		return data[pos];
+	}
+
+	private byte next() {
+		byte b = peek();
+		pos++;
+		return b;
+	}
+
+	private IllegalArgumentException error(String message) {
+		return new IllegalArgumentException(message + " at position " + (pos - start) + " of transaction record : "
+				+ new String(data, start, end - start, StandardCharsets.UTF_8));
+	}
+}
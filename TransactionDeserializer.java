@@ -0,0 +1,42 @@
+package com.upgrad.creditcardfrauddetection;
+
+import java.util.Map;
+
+import org.apache.kafka.common.serialization.Deserializer;
+
+/*
+ * TransactionDeserializer is Kafka value deserializer decoding transaction
+ * JSON records straight from their bytes into CreditCardFraudDetection
+ * through TransactionDecoder, instead of decoding them into a String first.
+ * A record which can not be decoded (or has no value) is returned with no
+ * fields set, same as CreditCardFraudDetection(String) does, so one bad record does
+ * not stop the stream.
+ */
+public class TransactionDeserializer implements Deserializer<CreditCardFraudDetection> {
+
+	@Override
+	public void configure(Map<String, ?> configs, boolean isKey) {
+	}
+
+	@Override
+	public CreditCardFraudDetection deserialize(String topic, byte[] data) {
+
+		CreditCardFraudDetection transaction = new CreditCardFraudDetection();
+		if (data == null) {
+			return transaction;
+		}
+
+		long start = System.nanoTime();
+		try {
+			TransactionDecoder.decodeInto(data, 0, data.length, transaction);
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+		FraudMetrics.record(FraudMetrics.Stage.DECODE, start);
+		return transaction;
+	}
+
+	@Override
+	public void close() {
+	}
+}
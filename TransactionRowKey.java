@@ -0,0 +1,133 @@
+package com.upgrad.creditcardfrauddetection;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.apache.hadoop.hbase.CompareOperator;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.filter.SingleColumnValueFilter;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/*
+ * TransactionRowKey builds row keys of card_transactions_hive table:
+ *
+ * salt (1 byte) | card_id | 0x00 | Long.MAX_VALUE - transaction_dt (8 bytes) | suffix (4 bytes)
+ *
+ * Salt is card_id hash modulo SALT_BUCKETS, so writes of different cards are
+ * spread over SALT_BUCKETS pre-split regions (see TransactionTableCreator)
+ * instead of all going to the region holding current time. All transactions of
+ * a card share one prefix and are sorted newest first, so last N transactions
+ * of a card are a short prefix scan instead of a full table scan. Suffix keeps
+ * transactions of a card at same second apart.
+ *
+ * SALT_BUCKETS must not change once table holds salted rows, since readers
+ * compute prefix of a card from it.
+ */
+final class TransactionRowKey {
+
+	static final int SALT_BUCKETS = 16;
+
+	private static final byte SEPARATOR = 0x00;
+
+	/*
+	 * Length of fixed part of a key : salt, separator, reversed time and suffix
+	 */
+	private static final int FIXED_LENGTH = 1 + 1 + Bytes.SIZEOF_LONG + Bytes.SIZEOF_INT;
+
+	private TransactionRowKey() {
+	}
+
+	/*
+	 * Salt bucket of a card
+	 */
+	static byte salt(String cardID) {
+		return (byte) Math.floorMod(cardID.hashCode(), SALT_BUCKETS);
+	}
+
+	/*
+	 * Key of a new transaction, with random suffix
+	 */
+	static byte[] newKey(String cardID, long epochMillis) {
+		return build(cardID, epochMillis, ThreadLocalRandom.current().nextInt());
+	}
+
+	static byte[] build(String cardID, long epochMillis, int suffix) {
+
+		byte[] card = Bytes.toBytes(cardID);
+		long time = (epochMillis == TransactionTime.NONE) ? 0L : epochMillis;
+
+		byte[] key = new byte[card.length + FIXED_LENGTH];
+		key[0] = salt(cardID);
+		System.arraycopy(card, 0, key, 1, card.length);
+		int offset = 1 + card.length;
+		key[offset++] = SEPARATOR;
+		offset = Bytes.putLong(key, offset, Long.MAX_VALUE - time);
+		Bytes.putInt(key, offset, suffix);
+		return key;
+	}
+
+	/*
+	 * Common prefix of all keys of a card
+	 */
+	static byte[] cardPrefix(String cardID) {
+		byte[] card = Bytes.toBytes(cardID);
+		byte[] prefix = new byte[card.length + 2];
+		prefix[0] = salt(cardID);
+		System.arraycopy(card, 0, prefix, 1, card.length);
+		prefix[prefix.length - 1] = SEPARATOR;
+		return prefix;
+	}
+
+	/*
+	 * Scan of all transactions of a card, newest first
+	 */
+	static Scan cardScan(String cardID) {
+		byte[] start = cardPrefix(cardID);
+		byte[] stop = start.clone();
+		stop[stop.length - 1] = SEPARATOR + 1;
+		return new Scan().withStartRow(start).withStopRow(stop);
+	}
+
+	/*
+	 * Scan of last limit transactions of a card with given status, newest first
+	 */
+	static Scan lastTransactionsScan(String cardID, String status, int limit) {
+		SingleColumnValueFilter filter = new SingleColumnValueFilter(HBaseSchema.TRANSACTIONS_FAMILY,
+				HBaseSchema.STATUS, CompareOperator.EQUAL, Bytes.toBytes(status));
+		filter.setFilterIfMissing(true);
+		return cardScan(cardID).setFilter(filter).setLimit(limit).setCaching(limit);
+	}
+
+	/*
+	 * true if row key is in salted layout, false for row keys written before
+	 * (randomUUID text)
+	 */
+	static boolean isSalted(byte[] row) {
+		return row.length >= FIXED_LENGTH && row[0] >= 0 && row[0] < SALT_BUCKETS
+				&& row[row.length - FIXED_LENGTH + 1] == SEPARATOR;
+	}
+
+	/*
+	 * card_id of a salted row key
+	 */
+	static String cardId(byte[] row) {
+		return Bytes.toString(row, 1, row.length - FIXED_LENGTH);
+	}
+
+	/*
+	 * transaction_dt of a salted row key as epoch milliseconds
+	 */
+	static long epochMillis(byte[] row) {
+		return Long.MAX_VALUE - Bytes.toLong(row, row.length - Bytes.SIZEOF_LONG - Bytes.SIZEOF_INT);
+	}
+
+	/*
+	 * Region split points, one per salt bucket after first
+	 */
+	static byte[][] splitKeys() {
+		byte[][] splits = new byte[SALT_BUCKETS - 1][];
+		for (int i = 1; i < SALT_BUCKETS; i++) {
+			splits[i - 1] = new byte[] { (byte) i };
+		}
+		return splits;
+	}
+}
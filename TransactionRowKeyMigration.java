@@ -0,0 +1,124 @@
+package com.upgrad.creditcardfrauddetection;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.client.BufferedMutator;
+import org.apache.hadoop.hbase.client.Delete;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/*
+ * TransactionRowKeyMigration moves rows of card_transactions_hive written under
+ * randomUUID row keys to salted row keys of TransactionRowKey, in place. Each
+ * row is copied with all its cells (and their timestamps) to its new key, and
+ * old rows of a batch are deleted only after the copies are flushed, so an
+ * interrupted run loses nothing. Suffix of new key is derived from old key, so
+ * running again after an interruption rewrites same keys instead of
+ * duplicating rows. Rows without card_id or transaction_dt are left as they
+ * are.
+ *
+ * Usage : TransactionRowKeyMigration [host server IP]
+ */
+public class TransactionRowKeyMigration {
+
+	/*
+	 * Number of rows fetched per scanner RPC and moved per batch
+	 */
+	private static final int BATCH_SIZE = 1000;
+
+	public static void main(String[] args) throws Exception {
+
+		/*
+		 * Check if 1 argument is passed to the program
+		 */
+		if (args.length != 1) {
+			System.out.println("Please enter 1st argument as host server IP");
+			return;
+		}
+
+		CreditCardFraudDetection.hostServerIP = args[0];
+
+		System.out.println("Row Key Migration Start Time : " + TransactionTime.now());
+
+		long scanned = 0L;
+		long moved = 0L;
+		long skipped = 0L;
+
+		List<Put> puts = new ArrayList<Put>(BATCH_SIZE);
+		List<Delete> deletes = new ArrayList<Delete>(BATCH_SIZE);
+
+		Scan scan = new Scan().addFamily(HBaseSchema.TRANSACTIONS_FAMILY).setCaching(BATCH_SIZE)
+				.setCacheBlocks(false);
+
+		try (Table table = HBaseConnectionHolder.getTable(HBaseSchema.TRANSACTIONS_TABLE);
+				ResultScanner scanner = table.getScanner(scan);
+				BufferedMutator mutator = HBaseConnectionHolder.getBufferedMutator(HBaseSchema.TRANSACTIONS_TABLE)) {
+
+			for (Result result : scanner) {
+				scanned++;
+				byte[] row = result.getRow();
+				if (TransactionRowKey.isSalted(row)) {
+					continue;
+				}
+
+				byte[] cardID = result.getValue(HBaseSchema.TRANSACTIONS_FAMILY, HBaseSchema.CARD_ID);
+				byte[] transactionDt = result.getValue(HBaseSchema.TRANSACTIONS_FAMILY, HBaseSchema.TRANSACTION_DT);
+				if (cardID == null || transactionDt == null) {
+					skipped++;
+					continue;
+				}
+
+				byte[] newRow;
+				try {
+					newRow = TransactionRowKey.build(Bytes.toString(cardID), TransactionTime.fromCell(transactionDt),
+							Bytes.hashCode(row));
+				} catch (Exception e) {
+					System.out.println("Could not build row key for row : " + Bytes.toString(row) + " : "
+							+ e.getMessage());
+					skipped++;
+					continue;
+				}
+
+				Put put = new Put(newRow);
+				for (Cell cell : result.rawCells()) {
+					put.addColumn(CellUtil.cloneFamily(cell), CellUtil.cloneQualifier(cell), cell.getTimestamp(),
+							CellUtil.cloneValue(cell));
+				}
+				puts.add(put);
+				deletes.add(new Delete(row));
+
+				if (puts.size() == BATCH_SIZE) {
+					moved += move(mutator, puts, deletes);
+					System.out.println("Rows Scanned : " + scanned + " : Rows Moved : " + moved);
+				}
+			}
+			moved += move(mutator, puts, deletes);
+		}
+
+		System.out.println("Row Key Migration End Time : " + TransactionTime.now() + " : Rows Scanned : " + scanned
+				+ " : Rows Moved : " + moved + " : Rows Skipped : " + skipped);
+
+		HBaseConnectionHolder.close();
+	}
+
+	/*
+	 * Flush copies of a batch before deleting their old rows
+	 */
+	private static int move(BufferedMutator mutator, List<Put> puts, List<Delete> deletes) throws Exception {
+		int count = puts.size();
+		mutator.mutate(puts);
+		mutator.flush();
+		mutator.mutate(deletes);
+		mutator.flush();
+		puts.clear();
+		deletes.clear();
+		return count;
+	}
+}
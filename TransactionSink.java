@@ -0,0 +1,25 @@
+package com.upgrad.creditcardfrauddetection;
+
+import java.io.IOException;
+import java.util.List;
+
+/*
+ * TransactionSink stores classified transactions : every transaction with its
+ * status, and postcode and transaction date of GENUINE ones as last
+ * transaction of their card in LookupStore. HBaseTransactionSink writes to
+ * card_transactions_hive and lookup_data_hive, InMemoryFraudStore to memory.
+ * Sink used by this JVM is selected by FraudStores.
+ */
+public interface TransactionSink {
+
+	/*
+	 * Store one classified transaction
+	 */
+	void write(CreditCardFraudDetection transaction) throws IOException;
+
+	/*
+	 * Store classified transactions in their order, as one batch where store
+	 * supports it
+	 */
+	void writeAll(List<CreditCardFraudDetection> transactions) throws IOException;
+}
@@ -0,0 +1,87 @@
+package com.upgrad.creditcardfrauddetection;
+
+import java.util.List;
+
+import org.apache.hadoop.hbase.client.Admin;
+import org.apache.hadoop.hbase.client.ColumnFamilyDescriptorBuilder;
+import org.apache.hadoop.hbase.client.RegionInfo;
+import org.apache.hadoop.hbase.client.TableDescriptorBuilder;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/*
+ * TransactionTableCreator prepares card_transactions_hive table for salted
+ * row keys of TransactionRowKey, with one region per salt bucket. If table
+ * does not exist, it is created pre-split. If it exists (created by Hive, see
+ * LoadCreateNoSQL.txt), each salt bucket boundary which is not yet a region
+ * boundary is split at, one split at a time.
+ *
+ * Usage : TransactionTableCreator [host server IP]
+ */
+public class TransactionTableCreator {
+
+	/*
+	 * Time to wait for a requested split to show up in region list
+	 */
+	private static final long SPLIT_WAIT_MILLIS = 60000L;
+
+	public static void main(String[] args) throws Exception {
+
+		/*
+		 * Check if 1 argument is passed to the program
+		 */
+		if (args.length != 1) {
+			System.out.println("Please enter 1st argument as host server IP");
+			return;
+		}
+
+		CreditCardFraudDetection.hostServerIP = args[0];
+
+		try (Admin admin = HBaseConnectionHolder.getAdmin()) {
+
+			if (!admin.tableExists(HBaseSchema.TRANSACTIONS_TABLE)) {
+				admin.createTable(
+						TableDescriptorBuilder.newBuilder(HBaseSchema.TRANSACTIONS_TABLE)
+								.setColumnFamily(ColumnFamilyDescriptorBuilder.of(HBaseSchema.TRANSACTIONS_FAMILY))
+								.build(),
+						TransactionRowKey.splitKeys());
+				System.out.println("HBase Table named : " + HBaseSchema.TRANSACTIONS_TABLE + " : created with "
+						+ TransactionRowKey.SALT_BUCKETS + " regions");
+			} else {
+				for (byte[] splitKey : TransactionRowKey.splitKeys()) {
+					if (isRegionStart(admin, splitKey)) {
+						continue;
+					}
+					admin.split(HBaseSchema.TRANSACTIONS_TABLE, splitKey);
+					waitForSplit(admin, splitKey);
+					System.out.println("HBase Table named : " + HBaseSchema.TRANSACTIONS_TABLE + " : split at : "
+							+ Bytes.toStringBinary(splitKey));
+				}
+			}
+
+			System.out.println("HBase Table named : " + HBaseSchema.TRANSACTIONS_TABLE + " : has "
+					+ admin.getRegions(HBaseSchema.TRANSACTIONS_TABLE).size() + " regions");
+		}
+
+		HBaseConnectionHolder.close();
+	}
+
+	private static boolean isRegionStart(Admin admin, byte[] key) throws Exception {
+		List<RegionInfo> regions = admin.getRegions(HBaseSchema.TRANSACTIONS_TABLE);
+		for (RegionInfo region : regions) {
+			if (Bytes.equals(region.getStartKey(), key)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static void waitForSplit(Admin admin, byte[] splitKey) throws Exception {
+		long deadline = System.currentTimeMillis() + SPLIT_WAIT_MILLIS;
+		while (!isRegionStart(admin, splitKey)) {
+			if (System.currentTimeMillis() > deadline) {
+				throw new IllegalStateException("Split at " + Bytes.toStringBinary(splitKey) + " did not complete");
+			}
+			Thread.sleep(1000L);
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package com.upgrad.creditcardfrauddetection;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/*
+ * TransactionTime holds date / time handling of the transaction path.
+ * Transaction times are held as epoch milliseconds (NONE for no time) and
+ * formatted / parsed in default time zone with cached DateTimeFormatters,
+ * which unlike SimpleDateFormat are immutable and thread-safe, so no formatter
+ * is created per record.
+ *
+ * transaction_dt cells of HBase tables are written and read through
+ * CellCodec, as "yyyy-MM-dd HH:mm:ss" text by default, as Hive reads them
+ * through hive-hbase integration (lookupDataRefresh.hql sorts
+ * card_transactions_hive by it and lookup_data_hive maps it as TIMESTAMP).
+ */
+final class TransactionTime {
+
+	/*
+	 * Marker used in place of a null time
+	 */
+	static final long NONE = Long.MIN_VALUE;
+
+	/*
+	 * Format of transaction_dt in HBase tables and in logs
+	 */
+	static final DateTimeFormatter HBASE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+	/*
+	 * Format of transaction_dt in transactions received from Kafka
+	 */
+	static final DateTimeFormatter INPUT_FORMAT = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss");
+
+	static final ZoneId ZONE = ZoneId.systemDefault();
+
+	/*
+	 * Length of "yyyy-MM-dd HH:mm:ss", text cells written by Hive may carry
+	 * fraction of second after it
+	 */
+	private static final int HBASE_FORMAT_LENGTH = 19;
+
+	private TransactionTime() {
+	}
+
+	/*
+	 * Current time in HBASE_FORMAT, for logs
+	 */
+	static String now() {
+		return format(System.currentTimeMillis());
+	}
+
+	/*
+	 * Format epoch milliseconds in HBASE_FORMAT, "null" for NONE
+	 */
+	static String format(long epochMillis) {
+		return format(epochMillis, HBASE_FORMAT);
+	}
+
+	/*
+	 * Format epoch milliseconds in INPUT_FORMAT, "null" for NONE
+	 */
+	static String formatInput(long epochMillis) {
+		return format(epochMillis, INPUT_FORMAT);
+	}
+
+	private static String format(long epochMillis, DateTimeFormatter formatter) {
+		if (epochMillis == NONE) {
+			return "null";
+		}
+		return formatter.format(LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZONE));
+	}
+
+	/*
+	 * Parse HBASE_FORMAT text into epoch milliseconds. Anything after seconds is
+	 * ignored, same as SimpleDateFormat parse did.
+	 */
+	static long parse(String text) {
+		if (text.length() > HBASE_FORMAT_LENGTH) {
+			text = text.substring(0, HBASE_FORMAT_LENGTH);
+		}
+		return LocalDateTime.parse(text, HBASE_FORMAT).atZone(ZONE).toInstant().toEpochMilli();
+	}
+
+	/*
+	 * HBase cell value of a transaction time
+	 */
+	static byte[] toCell(long epochMillis) {
+		return CellCodec.encodeTime(epochMillis);
+	}
+
+	/*
+	 * Read transaction time from HBase cell in any form written by CellCodec
+	 */
+	static long fromCell(byte[] value) {
+		return CellCodec.decodeTime(value);
+	}
+}
@@ -0,0 +1,33 @@
+package com.upgrad.creditcardfrauddetection;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/*
+ * UCL (Upper Control Limit) Validation rule : if transaction amount exceeds UCL
+ * based on last 10 genuine transactions then possible case of fraud
+ */
+final class UclRule implements FraudRule {
+
+	static final String NAME = "ucl";
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public String getDescription() {
+		return "UCL (Upper Control Limit) Validation rule : Amount <= UCL";
+	}
+
+	@Override
+	public Set<Input> getInputs() {
+		return EnumSet.of(Input.AMOUNT, Input.UCL);
+	}
+
+	@Override
+	public boolean evaluate(CreditCardFraudDetection transaction, CardLookupProfile profile) {
+		return transaction.getAmount() <= profile.getUcl();
+	}
+}
@@ -0,0 +1,26 @@
+package com.upgrad.creditcardfrauddetection;
+
+/**
+ * One-time converter of zipCodePosId.csv into binary snapshot used by
+ * DistanceUtility. Place the snapshot next to zipCodePosId.csv (working
+ * directory of the streaming application) so executors load it instead of
+ * parsing csv file.
+ *
+ * Usage : ZipCodeSnapshotConverter [csv file] [snapshot file]
+ *
+ */
+public class ZipCodeSnapshotConverter {
+
+	public static void main(String[] args) throws Exception {
+
+		String csvFile = (args.length > 0) ? args[0] : DistanceUtility.ZIP_CODE_CSV_FILE;
+		String snapshotFile = (args.length > 1) ? args[1] : DistanceUtility.ZIP_CODE_SNAPSHOT_FILE;
+
+		long start = System.currentTimeMillis();
+		ZipCodeStore store = ZipCodeStore.fromCsv(csvFile);
+		store.writeSnapshot(snapshotFile);
+
+		System.out.println("Converted " + store.size() + " zip codes from " + csvFile + " to " + snapshotFile + " in "
+				+ (System.currentTimeMillis() - start) + " ms");
+	}
+}
@@ -0,0 +1,342 @@
+package com.upgrad.creditcardfrauddetection;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Compact store of zip code coordinates. Zip codes are encoded as int and kept
+ * in an open addressing table with parallel double arrays for latitude and
+ * longitude, so the whole store is a few flat arrays instead of one object per
+ * zip code. City, state and post id of zipCodePosId.csv are not kept since the
+ * distance rule does not use them.
+ *
+ * Latitude and longitude in radians and cosine of latitude are computed once
+ * when store is built, so distance calculation does not need to convert
+ * degrees or evaluate cosine of latitude per call.
+ *
+ * Store also keeps, for each zip code, an upper bound of its distance to any
+ * other zip code of the store (its reach). It is derived from bounding box of
+ * all zip codes, so a distance check against a limit above the reach needs no
+ * trigonometry at all.
+ *
+ * Store can be built from zipCodePosId.csv or from binary snapshot written by
+ * ZipCodeSnapshotConverter. Snapshot is memory-mapped and copied into arrays
+ * with bulk reads, which is much faster than parsing the csv file.
+ *
+ */
+final class ZipCodeStore {
+
+	/*
+	 * Snapshot layout : magic, version, count, then count zip codes (int), count
+	 * latitudes (double) and count longitudes (double)
+	 */
+	static final int SNAPSHOT_MAGIC = 0x5A495043;
+	static final int SNAPSHOT_VERSION = 1;
+
+	private static final int EMPTY = -1;
+
+	private final int[] zipCodes;
+	private final double[] lat;
+	private final double[] lon;
+	private final double[] latRad;
+	private final double[] lonRad;
+	private final double[] cosLat;
+	private final double[] reach;
+	private final double maxReach;
+	private final int mask;
+	private final int size;
+
+	private ZipCodeStore(int[] zips, double[] lats, double[] lons, int count) {
+
+		/*
+		 * Table capacity is power of two with load factor at most 0.5
+		 */
+		int capacity = Integer.highestOneBit(Math.max(count, 1) * 2 - 1) << 1;
+		this.zipCodes = new int[capacity];
+		this.lat = new double[capacity];
+		this.lon = new double[capacity];
+		this.mask = capacity - 1;
+		Arrays.fill(this.zipCodes, EMPTY);
+
+		int distinct = 0;
+		for (int i = 0; i < count; i++) {
+			int slot = probe(zips[i]);
+			if (this.zipCodes[slot] == EMPTY) {
+				this.zipCodes[slot] = zips[i];
+				distinct++;
+			}
+			/*
+			 * Same as HashMap put, last row of a repeated zip code wins
+			 */
+			this.lat[slot] = lats[i];
+			this.lon[slot] = lons[i];
+		}
+		this.size = distinct;
+
+		/*
+		 * Precompute values used by distance calculation
+		 */
+		this.latRad = new double[capacity];
+		this.lonRad = new double[capacity];
+		this.cosLat = new double[capacity];
+		for (int slot = 0; slot < capacity; slot++) {
+			if (this.zipCodes[slot] != EMPTY) {
+				this.latRad[slot] = Math.toRadians(this.lat[slot]);
+				this.lonRad[slot] = Math.toRadians(this.lon[slot]);
+				this.cosLat[slot] = Math.cos(this.latRad[slot]);
+			}
+		}
+
+		/*
+		 * Bounding box of all zip codes in radians and largest cosine of latitude
+		 * within it
+		 */
+		double minLat = Double.MAX_VALUE, maxLat = -Double.MAX_VALUE;
+		double minLon = Double.MAX_VALUE, maxLon = -Double.MAX_VALUE;
+		for (int slot = 0; slot < capacity; slot++) {
+			if (this.zipCodes[slot] != EMPTY) {
+				minLat = Math.min(minLat, this.latRad[slot]);
+				maxLat = Math.max(maxLat, this.latRad[slot]);
+				minLon = Math.min(minLon, this.lonRad[slot]);
+				maxLon = Math.max(maxLon, this.lonRad[slot]);
+			}
+		}
+		double maxCosLat = (minLat <= 0 && maxLat >= 0) ? 1.0 : Math.max(Math.cos(minLat), Math.cos(maxLat));
+
+		/*
+		 * Haversine term sin^2(dLat/2) + cos(lat1) cos(lat2) sin^2(dLon/2) is bounded
+		 * using largest latitude and longitude difference from the zip code to the
+		 * bounding box and largest cosine of latitude in it. sin^2(x/2) grows up to x
+		 * = PI, beyond which the bound is 1.
+		 */
+		this.reach = new double[capacity];
+		double max = 0;
+		for (int slot = 0; slot < capacity; slot++) {
+			if (this.zipCodes[slot] != EMPTY) {
+				double dLat = Math.max(this.latRad[slot] - minLat, maxLat - this.latRad[slot]);
+				double dLon = Math.min(Math.PI, Math.max(this.lonRad[slot] - minLon, maxLon - this.lonRad[slot]));
+				double sinHalfDLat = Math.sin(dLat * 0.5);
+				double sinHalfDLon = Math.sin(dLon * 0.5);
+				double h = sinHalfDLat * sinHalfDLat + this.cosLat[slot] * maxCosLat * sinHalfDLon * sinHalfDLon;
+				this.reach[slot] = 2 * DistanceUtility.EARTH_RADIUS_KM * Math.asin(Math.sqrt(Math.min(1.0, h)));
+				max = Math.max(max, this.reach[slot]);
+			}
+		}
+		this.maxReach = max;
+	}
+
+	/**
+	 * Build store from zipCodePosId.csv (zip code, lat, lon, city, state, post id)
+	 */
+	static ZipCodeStore fromCsv(String path) throws NumberFormatException, IOException {
+
+		int[] zips = new int[1024];
+		double[] lats = new double[1024];
+		double[] lons = new double[1024];
+		int count = 0;
+
+		try (BufferedReader br = new BufferedReader(new FileReader(path))) {
+			String line = null;
+			while ((line = br.readLine()) != null) {
+				String str[] = line.split(",");
+
+				if (count == zips.length) {
+					zips = Arrays.copyOf(zips, count * 2);
+					lats = Arrays.copyOf(lats, count * 2);
+					lons = Arrays.copyOf(lons, count * 2);
+				}
+
+				int zipCode = parseZipCode(str[0]);
+				if (zipCode == EMPTY) {
+					throw new NumberFormatException("Invalid zip code : " + str[0]);
+				}
+				zips[count] = zipCode;
+				lats[count] = Double.parseDouble(str[1]);
+				lons[count] = Double.parseDouble(str[2]);
+				count++;
+			}
+		}
+
+		return new ZipCodeStore(zips, lats, lons, count);
+	}
+
+	/**
+	 * Build store from binary snapshot, memory-mapping the file for reading
+	 */
+	static ZipCodeStore fromSnapshot(String path) throws IOException {
+
+		try (RandomAccessFile file = new RandomAccessFile(path, "r"); FileChannel channel = file.getChannel()) {
+
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+			if (buffer.getInt() != SNAPSHOT_MAGIC) {
+				throw new IOException("File " + path + " is not a zip code snapshot");
+			}
+			int version = buffer.getInt();
+			if (version != SNAPSHOT_VERSION) {
+				throw new IOException("Unsupported zip code snapshot version " + version + " in file " + path);
+			}
+			int count = buffer.getInt();
+
+			int[] zips = new int[count];
+			double[] lats = new double[count];
+			double[] lons = new double[count];
+
+			buffer.asIntBuffer().get(zips);
+			buffer.position(buffer.position() + count * 4);
+			buffer.asDoubleBuffer().get(lats);
+			buffer.position(buffer.position() + count * 8);
+			buffer.asDoubleBuffer().get(lons);
+
+			return new ZipCodeStore(zips, lats, lons, count);
+		}
+	}
+
+	/**
+	 * Write this store as binary snapshot readable by fromSnapshot
+	 */
+	void writeSnapshot(String path) throws IOException {
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path)))) {
+
+			out.writeInt(SNAPSHOT_MAGIC);
+			out.writeInt(SNAPSHOT_VERSION);
+			out.writeInt(size);
+
+			/*
+			 * Zip codes, latitudes and longitudes are written as three columns in slot
+			 * order of the table
+			 */
+			for (int slot = 0; slot < zipCodes.length; slot++) {
+				if (zipCodes[slot] != EMPTY) {
+					out.writeInt(zipCodes[slot]);
+				}
+			}
+			for (int slot = 0; slot < zipCodes.length; slot++) {
+				if (zipCodes[slot] != EMPTY) {
+					out.writeDouble(lat[slot]);
+				}
+			}
+			for (int slot = 0; slot < zipCodes.length; slot++) {
+				if (zipCodes[slot] != EMPTY) {
+					out.writeDouble(lon[slot]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Encode zip code as int without creating any object. Returns -1 if input is
+	 * null, empty or has non digit characters.
+	 */
+	static int parseZipCode(String zipCode) {
+
+		if (zipCode == null) {
+			return EMPTY;
+		}
+		int length = zipCode.length();
+		if (length == 0 || length > 9) {
+			return EMPTY;
+		}
+		int value = 0;
+		for (int i = 0; i < length; i++) {
+			char c = zipCode.charAt(i);
+			if (c < '0' || c > '9') {
+				return EMPTY;
+			}
+			value = value * 10 + (c - '0');
+		}
+		return value;
+	}
+
+	/*
+	 * Linear probing, returns slot holding zip code or first empty slot
+	 */
+	private int probe(int zipCode) {
+		int slot = mix(zipCode) & mask;
+		while (zipCodes[slot] != EMPTY && zipCodes[slot] != zipCode) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	/*
+	 * Spread consecutive zip codes over the table
+	 */
+	private static int mix(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Returns slot of zip code, to be used with latitude and longitude methods,
+	 * or -1 if zip code is not present
+	 */
+	int indexOf(int zipCode) {
+		if (zipCode < 0) {
+			return EMPTY;
+		}
+		int slot = probe(zipCode);
+		return (zipCodes[slot] == EMPTY) ? EMPTY : slot;
+	}
+
+	/**
+	 * Returns slot of zip code given as string, or -1 if not present
+	 */
+	int indexOf(String zipCode) {
+		return indexOf(parseZipCode(zipCode));
+	}
+
+	int zipCode(int slot) {
+		return zipCodes[slot];
+	}
+
+	double latitude(int slot) {
+		return lat[slot];
+	}
+
+	double longitude(int slot) {
+		return lon[slot];
+	}
+
+	double latitudeRadians(int slot) {
+		return latRad[slot];
+	}
+
+	double longitudeRadians(int slot) {
+		return lonRad[slot];
+	}
+
+	double cosLatitude(int slot) {
+		return cosLat[slot];
+	}
+
+	/**
+	 * Upper bound of distance in km from zip code in slot to any zip code of store
+	 */
+	double reach(int slot) {
+		return reach[slot];
+	}
+
+	/**
+	 * Upper bound of distance in km between any two zip codes of store
+	 */
+	double maxReach() {
+		return maxReach;
+	}
+
+	/**
+	 * Number of distinct zip codes in store
+	 */
+	int size() {
+		return size;
+	}
+}
@@ -0,0 +1,140 @@
+package com.upgrad.creditcardfrauddetection;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/*
+ * BaselineRunner runs benchmarks and writes one line per benchmark
+ * (benchmark,mode,score,error,unit) to a baseline file, which is committed or
+ * kept per commit. If a previous baseline file is given, each score is
+ * compared with it and any benchmark slower by more than
+ * bench.regression.threshold (fraction, default 0.10) is reported as
+ * REGRESSION and exit code is 1.
+ *
+ * java -cp benchmarks.jar com.upgrad.creditcardfrauddetection.BaselineRunner
+ * <result file> [baseline file]
+ *
+ * bench.include selects benchmarks by regular expression (all by default).
+ */
+public class BaselineRunner {
+
+	private static final class Score {
+		final String mode;
+		final double score;
+		final double error;
+		final String unit;
+
+		Score(String mode, double score, double error, String unit) {
+			this.mode = mode;
+			this.score = score;
+			this.error = error;
+			this.unit = unit;
+		}
+
+		/*
+		 * Throughput modes are better when higher, time modes when lower
+		 */
+		boolean higherIsBetter() {
+			return mode.equals("thrpt");
+		}
+	}
+
+	public static void main(String[] args) throws IOException, RunnerException {
+
+		if (args.length < 1) {
+			System.out.println("Usage : BaselineRunner <result file> [baseline file]");
+			System.exit(2);
+		}
+
+		Options options = new OptionsBuilder().include(System.getProperty("bench.include", ".*")).build();
+		Collection<RunResult> results = new Runner(options).run();
+
+		Map<String, Score> current = new LinkedHashMap<String, Score>();
+		for (RunResult result : results) {
+			Result<?> primary = result.getPrimaryResult();
+			current.put(result.getParams().getBenchmark(),
+					new Score(result.getParams().getMode().shortLabel(), primary.getScore(),
+							primary.getScoreError(), primary.getScoreUnit()));
+		}
+		write(new File(args[0]), current);
+		System.out.println("\nBaseline written to : " + args[0]);
+
+		if (args.length > 1) {
+			double threshold = Double.parseDouble(System.getProperty("bench.regression.threshold", "0.10"));
+			int regressions = compare(read(new File(args[1])), current, threshold);
+			if (regressions > 0) {
+				System.exit(1);
+			}
+		}
+	}
+
+	private static void write(File file, Map<String, Score> scores) throws IOException {
+		try (PrintWriter writer = new PrintWriter(new FileWriter(file))) {
+			writer.println("benchmark,mode,score,error,unit");
+			for (Map.Entry<String, Score> entry : scores.entrySet()) {
+				Score score = entry.getValue();
+				writer.println(entry.getKey() + "," + score.mode + "," + String.format(Locale.ROOT, "%.6f", score.score)
+						+ "," + String.format(Locale.ROOT, "%.6f", score.error) + "," + score.unit);
+			}
+		}
+	}
+
+	private static Map<String, Score> read(File file) throws IOException {
+		Map<String, Score> scores = new LinkedHashMap<String, Score>();
+		try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+			String line = reader.readLine();
+			while ((line = reader.readLine()) != null) {
+				String[] fields = line.split(",");
+				if (fields.length == 5) {
+					scores.put(fields[0], new Score(fields[1], Double.parseDouble(fields[2]),
+							Double.parseDouble(fields[3]), fields[4]));
+				}
+			}
+		}
+		return scores;
+	}
+
+	/*
+	 * Print change of each benchmark against baseline, returns number of
+	 * regressions
+	 */
+	private static int compare(Map<String, Score> baseline, Map<String, Score> current, double threshold) {
+
+		int regressions = 0;
+		System.out.println("\nComparison with baseline (regression threshold " + (threshold * 100) + " %) :");
+		for (Map.Entry<String, Score> entry : current.entrySet()) {
+			Score before = baseline.get(entry.getKey());
+			Score after = entry.getValue();
+			if (before == null || !before.mode.equals(after.mode) || !before.unit.equals(after.unit)
+					|| before.score == 0d) {
+				System.out.println(entry.getKey() + " : no comparable baseline");
+				continue;
+			}
+			double change = (after.score - before.score) / before.score;
+			double slowdown = after.higherIsBetter() ? -change : change;
+			boolean regressed = slowdown > threshold;
+			if (regressed) {
+				regressions++;
+			}
+			System.out.println(entry.getKey() + " : " + String.format(Locale.ROOT, "%.3f", before.score) + " -> "
+					+ String.format(Locale.ROOT, "%.3f", after.score) + " " + after.unit + " : "
+					+ String.format(Locale.ROOT, "%+.1f", change * 100) + " %" + (regressed ? " : REGRESSION" : ""));
+		}
+		return regressions;
+	}
+}
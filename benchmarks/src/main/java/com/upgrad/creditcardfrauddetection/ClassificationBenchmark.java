@@ -0,0 +1,75 @@
+package com.upgrad.creditcardfrauddetection;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/*
+ * End to end rule evaluation of whole data set in arrival order. Lookup table
+ * is stubbed by a map of profiles, updated with postcode and transaction_dt of
+ * each GENUINE transaction as updateNoSQLDB does, so speed rule of each card
+ * sees its previous GENUINE transaction. Transactions are decoded in setup, so
+ * only classification is measured. Score is per transaction.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Dfraud.log.level=off", "-Dfraud.metrics.port=-1" })
+public class ClassificationBenchmark {
+
+	private SyntheticData data;
+	private CreditCardFraudDetection[] transactions;
+	private final Map<String, CardLookupProfile> lookup = new HashMap<String, CardLookupProfile>();
+
+	@Setup
+	public void setup() throws IOException {
+		data = SyntheticData.get();
+		System.setProperty("fraud.zipcode.dir", data.writeZipCodeDirectory().getPath());
+		DistanceUtility.getInstance();
+
+		transactions = new CreditCardFraudDetection[SyntheticData.TRANSACTIONS];
+		for (int i = 0; i < transactions.length; i++) {
+			transactions[i] = TransactionDecoder.decode(data.jsonBytes[i]);
+		}
+	}
+
+	/*
+	 * Every pass over data set starts from initial lookup profiles
+	 */
+	@Setup(Level.Invocation)
+	public void resetLookup() {
+		lookup.clear();
+		lookup.putAll(data.profiles);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SyntheticData.TRANSACTIONS)
+	public void classify(Blackhole blackhole) {
+		for (CreditCardFraudDetection transaction : transactions) {
+			CardLookupProfile profile = lookup.get(transaction.getCard_id());
+			transaction.classifyTransaction(profile);
+			if (transaction.getStatus().equals("GENUINE")) {
+				lookup.put(transaction.getCard_id(),
+						profile.withLastTransaction(transaction.getPostcode(), transaction.getTransactionMillis()));
+			}
+			blackhole.consume(transaction.getStatus());
+		}
+	}
+}
@@ -0,0 +1,51 @@
+package com.upgrad.creditcardfrauddetection;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Decoding of Kafka transaction JSON, by byte decoder used by
+ * TransactionDeserializer and by json-simple constructor
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Dfraud.log.level=off", "-Dfraud.metrics.port=-1" })
+public class DecodeBenchmark {
+
+	private SyntheticData data;
+	private int next = 0;
+
+	@Setup
+	public void setup() {
+		data = SyntheticData.get();
+	}
+
+	private int nextIndex() {
+		int i = next;
+		next = (i + 1) & (SyntheticData.TRANSACTIONS - 1);
+		return i;
+	}
+
+	@Benchmark
+	public CreditCardFraudDetection decodeBytes() {
+		return TransactionDecoder.decode(data.jsonBytes[nextIndex()]);
+	}
+
+	@Benchmark
+	public CreditCardFraudDetection decodeJsonSimple() {
+		return new CreditCardFraudDetection(data.json[nextIndex()]);
+	}
+}
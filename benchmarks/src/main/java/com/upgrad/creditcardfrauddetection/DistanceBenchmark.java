@@ -0,0 +1,60 @@
+package com.upgrad.creditcardfrauddetection;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Distance between postcodes of consecutive transactions of same card, as
+ * speed rule sees them. Each call takes next pair of data set, so distance
+ * cache sees same hit rate as in a stream.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Dfraud.log.level=off", "-Dfraud.metrics.port=-1" })
+public class DistanceBenchmark {
+
+	private SyntheticData data;
+	private DistanceUtility distUtil;
+	private int next = 0;
+
+	@Setup
+	public void setup() throws IOException {
+		data = SyntheticData.get();
+		System.setProperty("fraud.zipcode.dir", data.writeZipCodeDirectory().getPath());
+		distUtil = DistanceUtility.getInstance();
+	}
+
+	private int nextIndex() {
+		int i = next;
+		next = (i + 1) & (SyntheticData.TRANSACTIONS - 1);
+		return i;
+	}
+
+	@Benchmark
+	public double getDistanceViaZipCode() {
+		int i = nextIndex();
+		return distUtil.getDistanceViaZipCode(data.previousPostcodes[i], data.postcodes[i]);
+	}
+
+	@Benchmark
+	public boolean checkDistanceWithin() {
+		int i = nextIndex();
+		double limitKm = SpeedRule.MAX_SPEED_KM_PER_SEC
+				* (Math.abs(data.transactionMillis[i] - data.previousMillis[i]) / 1000);
+		return distUtil.checkDistanceWithin(data.previousPostcodes[i], data.postcodes[i], limitKm).isWithin();
+	}
+}
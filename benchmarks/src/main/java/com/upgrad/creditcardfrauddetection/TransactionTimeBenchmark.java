@@ -0,0 +1,55 @@
+package com.upgrad.creditcardfrauddetection;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Parsing and formatting of transaction_dt, in HBase and Kafka input formats
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Dfraud.log.level=off", "-Dfraud.metrics.port=-1" })
+public class TransactionTimeBenchmark {
+
+	private SyntheticData data;
+	private int next = 0;
+
+	@Setup
+	public void setup() {
+		data = SyntheticData.get();
+	}
+
+	private int nextIndex() {
+		int i = next;
+		next = (i + 1) & (SyntheticData.TRANSACTIONS - 1);
+		return i;
+	}
+
+	@Benchmark
+	public long parse() {
+		return TransactionTime.parse(data.hbaseDates[nextIndex()]);
+	}
+
+	@Benchmark
+	public String format() {
+		return TransactionTime.format(data.transactionMillis[nextIndex()]);
+	}
+
+	@Benchmark
+	public String formatInput() {
+		return TransactionTime.formatInput(data.transactionMillis[nextIndex()]);
+	}
+}
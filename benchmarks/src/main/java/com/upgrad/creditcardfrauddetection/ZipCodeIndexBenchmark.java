@@ -0,0 +1,58 @@
+package com.upgrad.creditcardfrauddetection;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Loading of zip code index at executor start, from zipCodePosId.csv and from
+ * binary snapshot written by ZipCodeSnapshotConverter
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Dfraud.log.level=off", "-Dfraud.metrics.port=-1" })
+public class ZipCodeIndexBenchmark {
+
+	private File csv;
+	private File snapshot;
+
+	@Setup
+	public void setup() throws IOException {
+		csv = Files.createTempFile("fraud-bench", ".csv").toFile();
+		snapshot = Files.createTempFile("fraud-bench", ".bin").toFile();
+		SyntheticData.get().writeZipCodeCsv(csv);
+		ZipCodeStore.fromCsv(csv.getPath()).writeSnapshot(snapshot.getPath());
+	}
+
+	@TearDown
+	public void tearDown() {
+		csv.delete();
+		snapshot.delete();
+	}
+
+	@Benchmark
+	public ZipCodeStore loadCsv() throws IOException {
+		return ZipCodeStore.fromCsv(csv.getPath());
+	}
+
+	@Benchmark
+	public ZipCodeStore loadSnapshot() throws IOException {
+		return ZipCodeStore.fromSnapshot(snapshot.getPath());
+	}
+}